@@ -1,11 +1,11 @@
-
-module org.derive4j.hkt {
+module org.derive4j.hkt.processor {
     requires transitive java.compiler;
+    requires org.derive4j.hkt;
     requires jdk.compiler;
     requires static derive4j.annotation;
     requires static auto.service.annotations;
 
-    exports org.derive4j.hkt;
+    exports org.derive4j.hkt.processor;
 
     provides javax.annotation.processing.Processor
         with org.derive4j.hkt.processor.HktProcessor;
@@ -2,7 +2,10 @@ package org.derive4j.hkt.processor;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -108,11 +111,17 @@ final class DataTypes {
             ArrayList<HktDecl> successes = new ArrayList<>();
             ArrayList<P2<HktDecl, E>> failures = new ArrayList<>();
 
-            IO.sequenceStream_(
-                validStream.map(_Valid.<E>cases()
-                    .Success(hktDecl -> IO.effect(() -> successes.add(hktDecl)))
-                    .Fail((hkt, error) -> IO.effect(() -> failures.add(_P2.of(hkt, error)))))
-            ).runUnchecked();
+            Function<Valid<E>, Unit> addToPartition = _Valid.<E>cases()
+                .Success(hkt -> {
+                    successes.add(hkt);
+                    return unit;
+                })
+                .Fail((hkt, error) -> {
+                    failures.add(_P2.of(hkt, error));
+                    return unit;
+                });
+
+            validStream.forEachOrdered(addToPartition::apply);
 
             return _P2.of(successes, failures);
         }
@@ -131,6 +140,10 @@ final class DataTypes {
             }
         }
 
+        /**
+         * Composite IOs (from {@link #bind} and {@link #sequenceStream_}) are run by a trampolined interpreter,
+         * in constant stack whatever the length of the pipeline.
+         */
         A run() throws IOException;
 
         default A runUnchecked() throws UncheckedIOException {
@@ -146,7 +159,7 @@ final class DataTypes {
         }
 
         default <B> IO<B> bind(Function<A, IO<B>> f) {
-            return () -> f.apply(run()).run();
+            return new Bind<>(this, f);
         }
 
         static <A> IO<A> unit(A a) { return () -> a; }
@@ -156,15 +169,52 @@ final class DataTypes {
         }
 
         static <A> IO<Unit> sequenceStream_(Stream<IO<A>> ios) {
-            return () -> {
-                try {
-                    ios.forEachOrdered(IO::runUnchecked);
+            return new Sequence_<>(ios);
+        }
+    }
+
+    private static final class Bind<A, B> implements IO<B> {
+        private final IO<A> io;
+        private final Function<A, IO<B>> f;
+
+        Bind(IO<A> io, Function<A, IO<B>> f) {
+            this.io = io;
+            this.f = f;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public B run() throws IOException {
+            Deque<Function<Object, IO<Object>>> continuations = new ArrayDeque<>();
+            IO<Object> current = (IO<Object>) (IO<?>) this;
+            while (true) {
+                while (current instanceof Bind) {
+                    Bind<Object, Object> bind = (Bind<Object, Object>) current;
+                    continuations.push(bind.f);
+                    current = bind.io;
                 }
-                catch (UncheckedIOException e) {
-                    throw e.getCause();
+                Object result = current.run();
+                if (continuations.isEmpty()) {
+                    return (B) result;
                 }
-                return unit;
-            };
+                current = continuations.pop().apply(result);
+            }
+        }
+    }
+
+    private static final class Sequence_<A> implements IO<Unit> {
+        private final Stream<IO<A>> ios;
+
+        Sequence_(Stream<IO<A>> ios) {
+            this.ios = ios;
+        }
+
+        @Override
+        public Unit run() throws IOException {
+            for (Iterator<IO<A>> it = ios.iterator(); it.hasNext(); ) {
+                it.next().run();
+            }
+            return unit;
         }
     }
 
@@ -184,5 +234,56 @@ final class DataTypes {
         }
     }
 
+    @Data(@Derive(inClass = "_LibFile"))
+    static abstract class LibFile {
+        interface Cases<R> {
+            R of(String classpathEntry, long hash);
+        }
+        abstract <R> R match(Cases<R> cases);
+
+        @Override
+        public abstract boolean equals(Object obj);
+
+        @Override
+        public abstract int hashCode();
+
+        @Override
+        public abstract String toString();
+    }
+
+    @Data(@Derive(inClass = "_LibKey"))
+    static abstract class LibKey {
+        interface Cases<R> {
+            R of(LibFile file, String elementName);
+        }
+        abstract <R> R match(Cases<R> cases);
+
+        @Override
+        public abstract boolean equals(Object obj);
+
+        @Override
+        public abstract int hashCode();
+
+        @Override
+        public abstract String toString();
+    }
+
+    /**
+     * What the processor does in a compilation, selected with {@code -Ahkt.mode}.
+     */
+    enum Mode {
+        /** Only check the hkt encodings and report errors, eg. for fast {@code -proc:only} lint stages. */
+        check,
+        /** Only generate the coerce methods of well-formed encodings. */
+        generate,
+        both;
+
+        static final String option = "hkt.mode";
+
+        boolean checks() { return this != generate; }
+
+        boolean generates() { return this != check; }
+    }
+
     enum Unit { unit }
 }
@@ -0,0 +1,339 @@
+package org.derive4j.hkt.processor;
+
+import org.derive4j.hkt.HktConfig;
+import org.derive4j.hkt.TypeEq;
+import org.derive4j.hkt.processor.DataTypes.*;
+import org.derive4j.hkt.processor.TypeRenderer.ClassName;
+import org.derive4j.hkt.processor.TypeRenderer.Imports;
+import org.derive4j.hkt.processor.TypeRenderer.Scope;
+import org.derive4j.hkt.processor.TypeRenderer.TypeParam;
+import org.derive4j.hkt.processor.TypeRenderer.TypeRef;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+@SuppressWarnings("OptionalGetWithoutIsPresent")
+final class GenCode {
+
+    private enum HktEffectiveVisibility {
+        Public {
+            @Override
+            String prefix() {
+                return "public ";
+            }
+        }, Package {
+            @Override
+            String prefix() {
+                return "";
+            }
+        };
+
+        abstract String prefix();
+
+    }
+
+    private final Elements Elts;
+
+    private final Types Types;
+    private final Filer Filer;
+    private final TypeRenderer TypeRenderer;
+    private final TypeElement __Elt;
+    private final TypeElement TypeEqElt;
+
+    GenCode(Elements elts, Types types, Filer filer, TypeElement elt) {
+        Elts = elts;
+        Types = types;
+        Filer = filer;
+        TypeRenderer = new TypeRenderer(elts);
+        __Elt = elt;
+        TypeEqElt = Elts.getTypeElement(TypeEq.class.getName());
+    }
+
+    IO<Unit> run(List<HktDecl> hktDecls) {
+
+        List<GenClass> genClasses = hktDecls.stream()
+            .collect(groupingBy(this::genClassName, TreeMap::new, toList()))
+            .entrySet()
+            .stream()
+            .map(e -> genClass(e.getKey(), e.getValue()))
+            .flatMap(Opt::asStream)
+            .collect(toList());
+
+        // Rendering only reads the GenClass values pulled from the javac model, so it can be done in parallel,
+        // while the files are still created from the javac thread, in order:
+        List<P2<GenClass, CharSequence>> renderedClasses = genClasses.parallelStream()
+            .map(genClass -> _P2.of(genClass, genClass.render()))
+            .collect(toList());
+
+        return IO.sequenceStream_(renderedClasses.stream().map(p -> p.match(this::writeClass)));
+    }
+
+    private Optional<GenClass> genClass(String genClassName, List<HktDecl> hktDecls) {
+
+        Set<TypeElement> newTypeElements = hktDecls.stream().map(_HktDecl::getTypeConstructor).collect(Collectors.toSet());
+
+        List<P2<TypeElement, CoerceMethod>> existingCoerceMethods = readGenClass(genClassName).map(
+            existingGenClasl -> ElementFilter.methodsIn(existingGenClasl.getEnclosedElements())
+                .stream()
+                .map(this::parseExistingCoerceMethod)
+                .flatMap(Opt::asStream)
+                .filter(p -> !newTypeElements.contains(p._1())))
+            .orElseGet(Stream::empty)
+            .collect(toList());
+
+        Stream<CoerceMethod> newCoerceMethods = hktDecls.stream().map(this::genCoerceMethod).flatMap(Opt::asStream);
+
+        List<CoerceMethod> allMethods = Stream.concat(existingCoerceMethods.stream().map(P2::_2), newCoerceMethods)
+            .collect(Collectors.toList());
+
+        return allMethods.isEmpty()
+            ? Optional.empty()
+            : Optional.of(genClassOf(genClassName, allMethods));
+    }
+
+    String genClassName(HktDecl hktDecl) {
+        return hktDecl.match((typeConstructor, hktInterface, conf) ->
+            _HktConf.getClassName(conf).contains(".")
+                ? _HktConf.getClassName(conf)
+                : Elts.getPackageOf(typeConstructor).getQualifiedName() + "." + _HktConf.getClassName(conf));
+    }
+
+    private GenClass genClassOf(String genClassName, List<CoerceMethod> allMethods) {
+
+        PackageElement packageELement = Elts.getPackageElement(genClassName.substring(0, genClassName.lastIndexOf(".")));
+
+        String genSimpleClassName = genClassName.substring(packageELement.getQualifiedName().toString().length() + 1,
+            genClassName.length());
+
+        ClassName typeEq = TypeRenderer.className(TypeEqElt);
+
+        List<ClassName> referencedClasses = new ArrayList<>();
+        referencedClasses.add(typeEq);
+        allMethods.forEach(method -> method.forEachClassName(referencedClasses::add));
+
+        Imports imports = TypeRenderer.imports(packageELement.getQualifiedName().toString(), genSimpleClassName,
+            allMethods.stream().map(method -> method.typeConstructor).collect(toList()), referencedClasses);
+
+        return new GenClass(genClassName, packageELement.getQualifiedName().toString(), genSimpleClassName, imports, typeEq,
+            allMethods);
+    }
+
+    private IO<Unit> writeClass(GenClass genClass, CharSequence classContent) {
+        return IO.effect(() -> {
+            try (Writer classWriter = new OutputStreamWriter(
+                    Filer.createSourceFile(genClass.qualifiedName).openOutputStream(), UTF_8)) {
+                classWriter.append(classContent);
+                classWriter.flush();
+            }
+        });
+    }
+
+    private Optional<P2<TypeElement, CoerceMethod>> parseExistingCoerceMethod(ExecutableElement coerceMethod) {
+        return coerceMethod.getParameters().size() != 1
+            ? Optional.empty()
+            : Visitors.asDeclaredType.visit(coerceMethod.getReturnType())
+                .flatMap(declaredType -> allSuperTypes(declaredType).filter(dt -> dt.asElement().equals(__Elt))
+                    .findFirst()
+                    .flatMap(hktInterface -> Visitors.asTypeElement.visit(declaredType.asElement())
+                        .flatMap(typeElement -> ElementFilter.methodsIn(coerceMethod.getEnclosingElement().getEnclosedElements())
+                            .stream()
+                            .filter(e -> e.getParameters().isEmpty())
+                            .filter(e -> e.getReturnType().toString().equals(
+                                Types.getDeclaredType(TypeEqElt, hktInterface, typeElement.asType()).toString()))
+                            .findAny()
+                            .map(typeEqMethod -> _P2.of(typeElement, genCoerceMethod(typeElement, hktInterface,
+                                coerceMethod.getSimpleName().toString(), typeEqMethod.getSimpleName().toString(),
+                                coerceMethod.getModifiers().contains(Modifier.PUBLIC)
+                                    ? HktEffectiveVisibility.Public
+                                    : HktEffectiveVisibility.Package))))));
+    }
+
+
+
+    private Optional<CoerceMethod> genCoerceMethod(HktDecl hktDecl) {
+        return hktDecl.match((typeConstructor, hktInterface, conf) -> {
+
+            HktConfig.Visibility visibility = _HktConf.getVisibility(conf);
+
+            if (visibility == HktConfig.Visibility.Disabled) {
+                return Optional.empty();
+            }
+
+            final String coerceMethodName =
+                _HktConf.getCoerceMethodTemplate(conf)
+                    .replace("{ClassName}", typeConstructor.getSimpleName())
+                    .replace("{className}", uncapitalize(typeConstructor.getSimpleName()));
+
+            final String typeEqMethodName =
+                _HktConf.getTypeEqMethodTemplate(conf)
+                    .replace("{ClassName}", typeConstructor.getSimpleName())
+                    .replace("{className}", uncapitalize(typeConstructor.getSimpleName()));
+
+            DeclaredType rootHktInterface = allSuperTypes(hktInterface).filter(dt -> dt.asElement().equals(__Elt))
+                .findAny()
+                .orElse(hktInterface);
+
+            HktEffectiveVisibility effectiveVisibility = visibility == HktConfig.Visibility.Same && typeConstructor.getModifiers()
+                .contains(Modifier.PUBLIC) ? HktEffectiveVisibility.Public: HktEffectiveVisibility.Package;
+
+            return Optional.of(genCoerceMethod(typeConstructor, rootHktInterface, coerceMethodName,
+                typeEqMethodName, effectiveVisibility));
+        });
+    }
+
+    private CoerceMethod genCoerceMethod(TypeElement typeConstructor,
+        DeclaredType hktInterface, String coerceMethodName, String typeEqMethodName, HktEffectiveVisibility visibility) {
+
+        return new CoerceMethod(visibility,
+            TypeRenderer.className(typeConstructor),
+            TypeRenderer.typeRef(typeConstructor.asType()),
+            typeConstructor.getTypeParameters().stream().map(TypeRenderer::typeParam).collect(toList()),
+            TypeRenderer.typeRef(hktInterface),
+            coerceMethodName,
+            typeEqMethodName);
+    }
+
+    private Optional<TypeElement> readGenClass(String genClassName) {
+        return Opt.unNull(Elts.getTypeElement(genClassName));
+    }
+
+    private Stream<DeclaredType> allSuperTypes(DeclaredType typeMirror) {
+        return Visitors.allSuperTypes(Types, typeMirror);
+    }
+
+    private static String uncapitalize(final CharSequence s) {
+        return (s.length() >= 2) && Character.isHighSurrogate(s.charAt(0)) && Character.isLowSurrogate(s.charAt(1))
+            ? s.toString().substring(0, 2).toLowerCase(Locale.US) + s.toString().substring(2)
+            : s.toString().substring(0, 1).toLowerCase(Locale.US) + s.toString().substring(1);
+    }
+
+    /**
+     * A class to generate, as pure values pulled from the javac model: safe to render from any thread.
+     */
+    private static final class GenClass {
+        final String qualifiedName;
+        final String packageName;
+        final String simpleName;
+        final Imports imports;
+        final ClassName typeEq;
+        final List<CoerceMethod> methods;
+
+        GenClass(String qualifiedName, String packageName, String simpleName, Imports imports, ClassName typeEq,
+            List<CoerceMethod> methods) {
+            this.qualifiedName = qualifiedName;
+            this.packageName = packageName;
+            this.simpleName = simpleName;
+            this.imports = imports;
+            this.typeEq = typeEq;
+            this.methods = methods;
+        }
+
+        CharSequence render() {
+            HktEffectiveVisibility classVisibility = methods.stream()
+                .map(m -> m.visibility)
+                .filter(HktEffectiveVisibility.Public::equals)
+                .findAny()
+                .orElse(HktEffectiveVisibility.Package);
+
+            StringBuilder out = new StringBuilder(512 * (methods.size() + 1));
+
+            out.append("package ").append(packageName).append(";\n\nimport org.derive4j.hkt.*;\n");
+            for (int i = 0; i < imports.explicitImports.size(); i++) {
+                out.append(i == 0 ? "" : "\n").append("import ").append(imports.explicitImports.get(i)).append(';');
+            }
+            out.append("\n\n")
+                .append(classVisibility.prefix()).append("final class ").append(simpleName).append(" {\n")
+                .append("  private ").append(simpleName).append("() {}\n\n");
+            for (int i = 0; i < methods.size(); i++) {
+                if (i > 0) {
+                    out.append("\n\n");
+                }
+                methods.get(i).render(imports, typeEq, out);
+            }
+            return out.append("\n}");
+        }
+    }
+
+    /**
+     * A coerce method to generate, as pure values pulled from the javac model: safe to render from any thread.
+     */
+    private static final class CoerceMethod {
+        final HktEffectiveVisibility visibility;
+        final ClassName typeConstructor;
+        final TypeRef type;
+        final List<TypeParam> typeParams;
+        final TypeRef hktInterface;
+        final String coerceMethodName;
+        final String typeEqMethodName;
+
+        CoerceMethod(HktEffectiveVisibility visibility, ClassName typeConstructor, TypeRef type, List<TypeParam> typeParams,
+            TypeRef hktInterface, String coerceMethodName, String typeEqMethodName) {
+            this.visibility = visibility;
+            this.typeConstructor = typeConstructor;
+            this.type = type;
+            this.typeParams = typeParams;
+            this.hktInterface = hktInterface;
+            this.coerceMethodName = coerceMethodName;
+            this.typeEqMethodName = typeEqMethodName;
+        }
+
+        void forEachClassName(Consumer<ClassName> action) {
+            type.forEachClassName(action);
+            typeParams.forEach(typeParam -> typeParam.forEachClassName(action));
+            hktInterface.forEachClassName(action);
+        }
+
+        void render(Imports imports, ClassName typeEq, StringBuilder out) {
+            Scope scope = imports.scope(typeParams.stream().map(typeParam -> typeParam.name).collect(toSet()));
+
+            // each part of the signature is rendered once, then copied where it appears:
+            int start = out.length();
+            out.append("  ").append(visibility.prefix()).append("static <");
+            for (int i = 0; i < typeParams.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                typeParams.get(i).render(scope, out);
+            }
+            out.append("> ");
+            int signatureStart = out.length();
+
+            int typeStart = out.length();
+            type.render(scope, out);
+            int typeEnd = out.length();
+
+            out.append(' ').append(coerceMethodName).append('(');
+            int hktInterfaceStart = out.length();
+            hktInterface.render(scope, out);
+            int hktInterfaceEnd = out.length();
+
+            out.append(" hkt) {\n    return (").append(out, typeStart, typeEnd).append(") hkt;\n  }\n\n")
+                .append("  @SuppressWarnings(\"unchecked\")\n")
+                .append(out, start, signatureStart)
+                .append(scope.nameOf(typeEq)).append('<').append(out, hktInterfaceStart, hktInterfaceEnd).append(", ")
+                .append(out, typeStart, typeEnd).append("> ").append(typeEqMethodName).append("(){\n")
+                .append("    return (").append(scope.nameOf(typeEq)).append(") ").append(scope.nameOf(typeEq))
+                .append(".refl();\n  }");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.derive4j.hkt.processor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.derive4j.hkt.processor.DataTypes.Mode;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Checks hkt encodings of source files without a full build: the {@link HktProcessor} rules are run in check mode through
+ * an in-process {@link javax.tools.JavaCompiler}, whose file manager is kept open (along with the processor library
+ * cache) across checks. In watch mode only the compilation units that changed since the last check are checked again.
+ * <p>
+ * Command line usage: {@code HktChecker [--classpath <path>] [--watch] <source directory>...}
+ */
+public final class HktChecker implements Closeable {
+
+    private static final long debounceMillis = 50;
+
+    private final javax.tools.JavaCompiler Javac;
+    private final StandardJavaFileManager FileManager;
+    private final List<Path> sourceDirs;
+    private final List<String> options;
+
+    private HktChecker(javax.tools.JavaCompiler javac, StandardJavaFileManager fileManager, List<Path> sourceDirs) {
+        Javac = javac;
+        FileManager = fileManager;
+        this.sourceDirs = sourceDirs;
+        options = Arrays.asList("-proc:only", "-implicit:none", "-A" + Mode.option + "=" + Mode.check,
+            "-A" + LibraryCache.maxEntriesOption + "=10000");
+    }
+
+    /**
+     * @param sourceDirs the source directories, used to resolve the types referenced by checked compilation units.
+     * @param classpath the compilation classpath.
+     * @return a checker, to be closed once not needed anymore.
+     * @throws IOException if the source directories or the classpath cannot be set.
+     * @throws IllegalStateException if no system java compiler is available (ie. running on a JRE).
+     */
+    public static HktChecker of(List<Path> sourceDirs, List<Path> classpath) throws IOException {
+        final javax.tools.JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new IllegalStateException("No system java compiler available");
+        }
+        final StandardJavaFileManager fileManager = javac.getStandardFileManager(null, Locale.getDefault(), null);
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, toFiles(sourceDirs));
+        fileManager.setLocation(StandardLocation.CLASS_PATH, toFiles(classpath));
+        return new HktChecker(javac, fileManager, new ArrayList<>(sourceDirs));
+    }
+
+    /**
+     * @return the hkt errors and warnings, and the compilation errors, of all java files of the source directories.
+     */
+    public List<Diagnostic<? extends JavaFileObject>> checkAll() throws IOException {
+        return check(javaFiles(sourceDirs));
+    }
+
+    /**
+     * @param sourceFiles the compilation units to check.
+     * @return the hkt errors and warnings, and the compilation errors, of the given compilation units.
+     */
+    public List<Diagnostic<? extends JavaFileObject>> check(Collection<Path> sourceFiles) {
+        if (sourceFiles.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        final javax.tools.JavaCompiler.CompilationTask task = Javac.getTask(null, FileManager, diagnostics, options, null,
+            FileManager.getJavaFileObjectsFromFiles(toFiles(sourceFiles)));
+        task.setProcessors(singletonList(new HktProcessor()));
+        task.call();
+
+        return diagnostics.getDiagnostics().stream().filter(HktChecker::isHktDiagnostic).collect(toList());
+    }
+
+    /**
+     * Check all source files, then block and check again the compilation units that are created or modified, until the
+     * current thread is interrupted.
+     *
+     * @param onCheck called with the files that were checked and their hkt errors and warnings.
+     */
+    public void watch(Consumer<Map<Path, List<Diagnostic<? extends JavaFileObject>>>> onCheck)
+        throws IOException, InterruptedException {
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            final Map<WatchKey, Path> watchedDirs = new LinkedHashMap<>();
+            for (Path sourceDir : sourceDirs) {
+                register(watchService, sourceDir, watchedDirs);
+            }
+
+            onCheck.accept(byFile(javaFiles(sourceDirs), checkAll()));
+
+            while (!Thread.currentThread().isInterrupted()) {
+                final Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                do {
+                    changed.addAll(changedJavaFiles(watchService, key, watchedDirs));
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                final List<Path> existing = changed.stream().filter(Files::isRegularFile).collect(toList());
+                if (!changed.isEmpty()) {
+                    onCheck.accept(byFile(changed, check(existing)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        FileManager.close();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final List<Path> sourceDirs = new ArrayList<>();
+        final List<Path> classpath = new ArrayList<>();
+        boolean watch = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--watch":
+                    watch = true;
+                    break;
+                case "-cp":
+                case "--classpath":
+                    if (++i == args.length) {
+                        usage();
+                        return;
+                    }
+                    Arrays.stream(args[i].split(File.pathSeparator)).filter(s -> !s.isEmpty()).map(Paths::get)
+                        .forEach(classpath::add);
+                    break;
+                default:
+                    sourceDirs.add(Paths.get(args[i]));
+            }
+        }
+        if (sourceDirs.isEmpty()) {
+            usage();
+            return;
+        }
+
+        final int status;
+        try (HktChecker checker = of(sourceDirs, classpath)) {
+            if (watch) {
+                checker.watch(checked -> checked.values().forEach(diagnostics -> print(System.err, diagnostics)));
+                status = 0;
+            } else {
+                final List<Diagnostic<? extends JavaFileObject>> diagnostics = checker.checkAll();
+                print(System.err, diagnostics);
+                status = diagnostics.stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR) ? 1 : 0;
+            }
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: HktChecker [--classpath <path>] [--watch] <source directory>...");
+        System.exit(2);
+    }
+
+    private static void print(PrintStream out, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        diagnostics.forEach(d -> out.println((d.getSource() == null ? "" : d.getSource().getName() + ":" + d.getLineNumber() + ": ")
+            + d.getKind().toString().toLowerCase(Locale.ROOT) + ": " + d.getMessage(Locale.getDefault())));
+    }
+
+    // Messages reported by the processor itself, and javac errors (eg. syntax errors or unresolved symbols), that may
+    // hide hkt errors in the types that could not be processed; javac warnings and notes are left to the build:
+    private static boolean isHktDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
+        return diagnostic.getKind() == Diagnostic.Kind.ERROR
+            || (diagnostic.getCode() != null && diagnostic.getCode().endsWith(".proc.messager"));
+    }
+
+    private static Map<Path, List<Diagnostic<? extends JavaFileObject>>> byFile(Collection<Path> checked,
+        List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+
+        final Map<Path, List<Diagnostic<? extends JavaFileObject>>> byFile = new LinkedHashMap<>();
+        checked.forEach(file -> byFile.put(file.toAbsolutePath().normalize(), new ArrayList<>()));
+        diagnostics.stream().filter(d -> d.getSource() != null).forEach(d ->
+            byFile.computeIfAbsent(Paths.get(d.getSource().toUri()).normalize(), __ -> new ArrayList<>()).add(d));
+        return byFile;
+    }
+
+    private static List<Path> changedJavaFiles(WatchService watchService, WatchKey key, Map<WatchKey, Path> watchedDirs)
+        throws IOException {
+
+        final Path dir = watchedDirs.get(key);
+        final List<Path> changed = new ArrayList<>();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                continue;
+            }
+            final Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(watchService, path, watchedDirs);
+                changed.addAll(javaFiles(singletonList(path)));
+            } else if (path.toString().endsWith(".java")) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return changed;
+    }
+
+    private static void register(WatchService watchService, Path root, Map<WatchKey, Path> watchedDirs) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            dirs.filter(Files::isDirectory).forEach(dir -> {
+                try {
+                    watchedDirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static List<Path> javaFiles(List<Path> dirs) throws IOException {
+        final List<Path> javaFiles = new ArrayList<>();
+        for (Path dir : dirs) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.filter(f -> f.toString().endsWith(".java") && Files.isRegularFile(f)).forEach(javaFiles::add);
+            }
+        }
+        return javaFiles;
+    }
+
+    private static List<File> toFiles(Collection<Path> paths) {
+        return paths.stream().map(Path::toFile).collect(toList());
+    }
+}
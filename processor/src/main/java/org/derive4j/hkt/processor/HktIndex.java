@@ -0,0 +1,178 @@
+package org.derive4j.hkt.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import javax.annotation.processing.Filer;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import org.derive4j.hkt.processor.DataTypes.IO;
+import org.derive4j.hkt.processor.DataTypes.Unit;
+
+/**
+ * What the processor learnt about one package: its explicit {@link org.derive4j.hkt.HktConfig} values, and for each of
+ * its types whether it is a type constructor (with its witness and generated class).
+ * It is published in the class output as the {@code derive4j-hkt.index} resource of the package (javac does not read
+ * the {@code META-INF} entries of jars on the class path), so that downstream compilations can look up library packages
+ * and types in the index of their package instead of completing their symbols.
+ * Types that are not listed (eg. because they were not part of the compilation that wrote the index) are unknown.
+ * Downstream compilations only read indexes from jars, and only trust them for the class files of the same jar: a stale
+ * or partially written index in a directory, or the index of a package that is split across jars, is never mistaken
+ * for the description of the classes that are actually read.
+ */
+final class HktIndex {
+
+    static final String resourceName = "derive4j-hkt.index";
+
+    private static final String configPrefix = "config.";
+    private static final String typePrefix = "type.";
+    private static final String typeConstructorPrefix = "typeConstructor.";
+    private static final String generatedInPrefix = "generatedIn.";
+
+    private final Optional<Path> jar;
+    private final Map<String, String> config;
+    private final Map<String, String> typeConstructors = new TreeMap<>();
+    private final Map<String, String> otherTypes = new TreeMap<>();
+    private final Map<String, String> generatedIn = new TreeMap<>();
+    private final Map<String, Boolean> describedClassFiles = new HashMap<>();
+
+    HktIndex(Map<String, String> config) {
+        this(Optional.empty(), config);
+    }
+
+    private HktIndex(Optional<Path> jar, Map<String, String> config) {
+        this.jar = jar;
+        this.config = new TreeMap<>(config);
+    }
+
+    /**
+     * @param packageName the package of the index.
+     * @return the explicit {@link org.derive4j.hkt.HktConfig} values of the package, by annotation method name, or empty
+     * if the package-info of the classpath is not the one the index was written for.
+     */
+    Optional<Map<String, String>> config(Filer filer, String packageName) {
+        return describes(filer, packageName.replace('.', '/') + "/package-info.class")
+            ? Optional.of(config)
+            : Optional.empty();
+    }
+
+    /**
+     * @param binaryName binary name of a type of the package.
+     * @return whether the type is a type constructor, or empty if the type is not indexed or if its class file on the
+     * classpath is not the one the index was written for.
+     */
+    Optional<Boolean> isTypeConstructor(Filer filer, String binaryName) {
+        final Optional<Boolean> isTypeConstructor = typeConstructors.containsKey(binaryName)
+            ? Optional.of(true)
+            : otherTypes.containsKey(binaryName) ? Optional.of(false) : Optional.empty();
+
+        return isTypeConstructor.filter(__ -> describes(filer, binaryName.replace('.', '/') + ".class"));
+    }
+
+    /**
+     * @param classFile a class file path of the package, relative to its classpath entry.
+     * @return whether the class file is read from the jar this index was read from.
+     */
+    private boolean describes(Filer filer, String classFile) {
+        return describedClassFiles.computeIfAbsent(classFile, __ -> {
+            final int lastSlash = classFile.lastIndexOf('/');
+            try {
+                final Optional<Path> classFileJar = LibraryCache.jarOf(filer.getResource(StandardLocation.CLASS_PATH,
+                    classFile.substring(0, lastSlash).replace('/', '.'), classFile.substring(lastSlash + 1)).toUri());
+
+                return jar.isPresent() && classFileJar.equals(jar);
+            } catch (IOException | IllegalArgumentException e) {
+                return false;
+            }
+        });
+    }
+
+    void addType(String binaryName) {
+        if (!typeConstructors.containsKey(binaryName)) {
+            otherTypes.put(binaryName, "");
+        }
+    }
+
+    void addTypeConstructor(String binaryName, String witness, Optional<String> generatedClass) {
+        otherTypes.remove(binaryName);
+        typeConstructors.put(binaryName, witness);
+        generatedClass.ifPresent(genClass -> generatedIn.put(binaryName, genClass));
+    }
+
+    static Optional<HktIndex> read(Filer filer, String packageName) {
+        if (packageName.isEmpty()) {
+            return Optional.empty();
+        }
+        final Properties properties = new Properties();
+        final Optional<Path> jar;
+        try {
+            final FileObject resource = filer.getResource(StandardLocation.CLASS_PATH, packageName, resourceName);
+            jar = LibraryCache.jarOf(resource.toUri());
+            if (!jar.isPresent()) {
+                return Optional.empty();
+            }
+            try (InputStream in = resource.openInputStream()) {
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        final HktIndex index = new HktIndex(jar, new TreeMap<>());
+        for (String key : properties.stringPropertyNames()) {
+            final String value = properties.getProperty(key);
+            if (key.startsWith(configPrefix)) {
+                index.config.put(key.substring(configPrefix.length()), value);
+            } else if (key.startsWith(typeConstructorPrefix)) {
+                index.typeConstructors.put(key.substring(typeConstructorPrefix.length()), value);
+            } else if (key.startsWith(typePrefix)) {
+                index.otherTypes.put(key.substring(typePrefix.length()), value);
+            } else if (key.startsWith(generatedInPrefix)) {
+                index.generatedIn.put(key.substring(generatedInPrefix.length()), value);
+            }
+        }
+        return Optional.of(index);
+    }
+
+    IO<Unit> write(Filer filer, String packageName) {
+        return IO.effect(() -> {
+            final FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, packageName, resourceName);
+            try (Writer writer = resource.openWriter()) {
+                writer.write("# hkt index of package " + packageName + "\n");
+                writeEntries(writer, configPrefix, config);
+                writeEntries(writer, typeConstructorPrefix, typeConstructors);
+                writeEntries(writer, generatedInPrefix, generatedIn);
+                writeEntries(writer, typePrefix, otherTypes);
+            }
+        });
+    }
+
+    private static void writeEntries(Writer writer, String prefix, Map<String, String> entries) throws IOException {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writer.write(escape(prefix + entry.getKey()) + "=" + escape(entry.getValue()) + "\n");
+        }
+    }
+
+    /**
+     * Escapes everything but plain ascii names, so that the index reads back the same with {@link Properties#load}.
+     */
+    private static String escape(String str) {
+        final StringBuilder escaped = new StringBuilder(str.length());
+        for (char c : str.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ".$_-{}<>,?".indexOf(c) != -1) {
+                escaped.append(c);
+            } else {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -30,12 +30,20 @@
 package org.derive4j.hkt.processor;
 
 import com.google.auto.service.AutoService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -45,12 +53,11 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
-import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
@@ -69,6 +76,7 @@ import org.derive4j.hkt.processor.DataTypes.HkTypeError;
 import org.derive4j.hkt.processor.DataTypes.HktConf;
 import org.derive4j.hkt.processor.DataTypes.HktDecl;
 import org.derive4j.hkt.processor.DataTypes.IO;
+import org.derive4j.hkt.processor.DataTypes.Mode;
 import org.derive4j.hkt.processor.DataTypes.Opt;
 import org.derive4j.hkt.processor.DataTypes.P2;
 import org.derive4j.hkt.processor.DataTypes.Unit;
@@ -88,22 +96,36 @@ import static org.derive4j.hkt.processor._HkTypeError.WrongHKTInterface;
 
 @AutoService(Processor.class)
 @SupportedAnnotationTypes("*")
+@SupportedOptions({ LibraryCache.maxEntriesOption, LibraryCache.statsOption, Mode.option })
 public final class HktProcessor extends AbstractProcessor {
 
     private Types Types;
     private Elements Elts;
     private Messager Messager;
+    private Mode mode;
     private GenCode GenCode;
     private Optional<JavaCompiler.JdkSpecificApi> JdkSpecificApi;
+    private Optional<LibraryCache.Session> LibraryFacts;
+
+    private final Map<String, Optional<HktIndex>> libraryIndexes = new HashMap<>();
+    private final Map<String, HktIndex> publishedIndexes = new TreeMap<>();
 
     private TypeElement __Elt;
 
     private TypeElement HktConfigElt;
-    private ExecutableElement witnessTypeNameConfMethod;
-    private ExecutableElement generateInConfMethod;
-    private ExecutableElement withVisibilityConfMethod;
-    private ExecutableElement coerceMethodNameConfMethod;
-    private ExecutableElement typeEqMethodNameConfMethod;
+
+    private final Function<Integer, LibraryCache> libraryCaches;
+
+    public HktProcessor() {
+        this(LibraryCache::processWide);
+    }
+
+    /**
+     * @param libraryCaches the library cache to use, given its configured maximum number of entries.
+     */
+    HktProcessor(Function<Integer, LibraryCache> libraryCaches) {
+        this.libraryCaches = libraryCaches;
+    }
 
     @Override
     public SourceVersion getSupportedSourceVersion() {
@@ -117,67 +139,166 @@ public final class HktProcessor extends AbstractProcessor {
         Types = processingEnv.getTypeUtils();
         Elts = processingEnv.getElementUtils();
         Messager = processingEnv.getMessager();
+        mode = mode(processingEnv);
         JdkSpecificApi = jdkSpecificApi(processingEnv);
+        LibraryFacts = libraryFacts(processingEnv, JdkSpecificApi, libraryCaches);
 
         __Elt = Elts.getTypeElement(__.class.getCanonicalName());
         GenCode = new GenCode(Elts, Types, processingEnv.getFiler(), __Elt);
 
         HktConfigElt = Elts.getTypeElement(HktConfig.class.getName());
-        witnessTypeNameConfMethod = unsafeGetExecutableElement(HktConfigElt, "witnessTypeName");
-        generateInConfMethod = unsafeGetExecutableElement(HktConfigElt, "generateIn");
-        withVisibilityConfMethod = unsafeGetExecutableElement(HktConfigElt, "withVisibility");
-        coerceMethodNameConfMethod = unsafeGetExecutableElement(HktConfigElt, "coerceMethodName");
-        typeEqMethodNameConfMethod = unsafeGetExecutableElement(HktConfigElt, "typeEqMethodName");
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        final Stream<TypeElement> allTypes = ElementFilter
-            .typesIn(roundEnv.getRootElements())
-            .stream()
-            .flatMap(tel -> Stream.concat(Stream.of(tel), allInnerTypes(tel)));
+        final List<TypeElement> allTypes = allTypes(ElementFilter.typesIn(roundEnv.getRootElements()));
 
-        final Stream<HktDecl> targetTypes = allTypes.map(this::asHktDecl).flatMap(Opt::asStream);
+        final Stream<HktDecl> targetTypes = allTypes.stream().map(this::asHktDecl).flatMap(Opt::asStream);
 
         final Stream<Valid<List<HkTypeError>>> validations = targetTypes.map(this::checkHktType);
 
         P2<List<HktDecl>, List<P2<HktDecl, List<HkTypeError>>>> successFailures = Valid.partition(validations);
 
-        Map<String, List<HktDecl>> hktDeclByGenClassName = successFailures._1().stream()
-            .collect(Collectors.groupingBy(GenCode::genClassName));
+        if (mode.generates()) {
+            ElementFilter.packagesIn(roundEnv.getRootElements()).forEach(this::publishedIndex);
+            addToPublishedIndexes(allTypes, successFailures);
+        }
 
-        Stream<IO<Unit>> generationActions = hktDeclByGenClassName.entrySet()
-            .stream()
-            .map(e -> GenCode.run(e.getKey(), e.getValue()));
+        Stream<IO<Unit>> generationActions = mode.generates()
+            ? Stream.of(GenCode.run(successFailures._1()))
+            : Stream.empty();
+
+        Stream<IO<Unit>> errorReports = successFailures._2().stream().map(p -> p.match(this::reportErrors));
+
+        Stream<IO<Unit>> indexWrites = mode.generates() && roundEnv.processingOver()
+            ? publishedIndexes.entrySet().stream().map(index -> index.getValue().write(processingEnv.getFiler(), index.getKey()))
+            : Stream.empty();
 
-        final IO<Unit> effects = IO.sequenceStream_(Stream.concat
-            (generationActions, successFailures._2().stream().map(p -> p.match(this::reportErrors))));
+        Stream<IO<Unit>> cacheStats = roundEnv.processingOver() && processingEnv.getOptions().containsKey(LibraryCache.statsOption)
+            ? Opt.asStream(LibraryFacts).map(libraryFacts -> IO.effect(() -> Messager.printMessage(Diagnostic.Kind.NOTE, libraryFacts.stats())))
+            : Stream.empty();
+
+        final IO<Unit> effects = IO.sequenceStream_(Stream.of(generationActions, errorReports, indexWrites, cacheStats)
+            .flatMap(Function.identity()));
 
         effects.runUnchecked();
 
         return false;
     }
 
+    private void addToPublishedIndexes(List<TypeElement> allTypes,
+        P2<List<HktDecl>, List<P2<HktDecl, List<HkTypeError>>>> successFailures) {
+
+        allTypes.forEach(tel -> publishedIndex(Elts.getPackageOf(tel)).ifPresent(index -> index.addType(binaryName(tel))));
+
+        successFailures._1().forEach(hktDecl -> addTypeConstructor(hktDecl, Optional.of(GenCode.genClassName(hktDecl))));
+        successFailures._2().forEach(failure -> addTypeConstructor(failure._1(), Optional.empty()));
+    }
+
+    private void addTypeConstructor(HktDecl hktDecl, Optional<String> generatedClass) {
+        final TypeElement typeConstructor = _HktDecl.getTypeConstructor(hktDecl);
+        final String witness = _HktDecl.getHktInterface(hktDecl).getTypeArguments().stream()
+            .findFirst().map(TypeMirror::toString).orElse("");
+
+        publishedIndex(Elts.getPackageOf(typeConstructor)).ifPresent(index ->
+            index.addTypeConstructor(binaryName(typeConstructor), witness, generatedClass));
+    }
+
+    private Optional<HktIndex> publishedIndex(PackageElement pkg) {
+        return pkg.isUnnamed()
+            ? Optional.empty()
+            : Optional.of(publishedIndexes.computeIfAbsent(pkg.getQualifiedName().toString(),
+                __ -> new HktIndex(hktConfigValues(pkg))));
+    }
+
+    /**
+     * @return the index published in a jar by the compilation of the library package {@code pkg}, if any.
+     */
+    private Optional<HktIndex> libraryIndex(PackageElement pkg) {
+        return JdkSpecificApi.filter(jdkSpecificApi -> !jdkSpecificApi.isFromSource(pkg))
+            .flatMap(__ -> libraryIndexes.computeIfAbsent(pkg.getQualifiedName().toString(),
+                packageName -> HktIndex.read(processingEnv.getFiler(), packageName)));
+    }
+
+    private String binaryName(TypeElement tel) {
+        return Elts.getBinaryName(tel).toString();
+    }
+
     private static Optional<JavaCompiler.JdkSpecificApi> jdkSpecificApi(ProcessingEnvironment processingEnv) {
         return processingEnv.getElementUtils().getTypeElement("com.sun.source.util.Trees") != null
             ? Optional.of(new OpenJdkSpecificApi(processingEnv))
             : Optional.empty();
     }
 
-    private Stream<TypeElement> allInnerTypes(TypeElement tel) {
+    private static Mode mode(ProcessingEnvironment processingEnv) {
+        return Opt.fromStr(processingEnv.getOptions().get(Mode.option)).map(value -> {
+            try {
+                return Mode.valueOf(value.trim());
+            } catch (IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, format(
+                    "Ignoring -A%s=%s: expected one of check, generate or both.", Mode.option, value));
+                return Mode.both;
+            }
+        }).orElse(Mode.both);
+    }
+
+    private static Optional<LibraryCache.Session> libraryFacts(ProcessingEnvironment processingEnv,
+        Optional<JavaCompiler.JdkSpecificApi> jdkSpecificApi, Function<Integer, LibraryCache> libraryCaches) {
+        final Map<String, String> options = processingEnv.getOptions();
+        final Optional<Integer> maxEntries = LibraryCache.maxEntries(options);
+
+        if (options.containsKey(LibraryCache.maxEntriesOption) && !maxEntries.isPresent()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, format(
+                "Ignoring -A%s=%s: a positive number of entries is expected.",
+                LibraryCache.maxEntriesOption,
+                options.get(LibraryCache.maxEntriesOption)));
+        }
+
+        return jdkSpecificApi.flatMap(jdkApi -> maxEntries.map(max -> libraryCaches.apply(max)
+            .session(processingEnv.getElementUtils(), processingEnv.getFiler(), jdkApi)));
+    }
+
+    /**
+     * The given types and all their member and local types, at any depth, each one once: each root type is followed by
+     * its inner types, then by the inner types of each of them in turn, and so on.
+     * Uses an explicit worklist so that the depth of nesting is not limited by the stack.
+     */
+    private List<TypeElement> allTypes(Collection<TypeElement> rootTypes) {
+        final List<TypeElement> allTypes = new ArrayList<>();
+        final Set<TypeElement> visited = new HashSet<>();
+        final Deque<TypeElement> worklist = new ArrayDeque<>();
+
+        for (TypeElement rootType : rootTypes) {
+            if (visited.add(rootType)) {
+                allTypes.add(rootType);
+                worklist.push(rootType);
+            }
+            while (!worklist.isEmpty()) {
+                final List<TypeElement> innerTypes = innerTypes(worklist.pop())
+                    .stream()
+                    .filter(visited::add)
+                    .collect(Collectors.toList());
+                allTypes.addAll(innerTypes);
+                pushAll(worklist, innerTypes);
+            }
+        }
+        return allTypes;
+    }
+
+    private List<TypeElement> innerTypes(TypeElement tel) {
         final Stream<TypeElement> memberTypes =
             ElementFilter.typesIn(tel.getEnclosedElements()).stream();
 
         final Stream<TypeElement> localTypes =
             JdkSpecificApi.map(jdkSpecificApi -> jdkSpecificApi.localTypes(tel)).orElse(Stream.empty());
 
-        final List<TypeElement> allTypes =
-            Stream.concat(memberTypes, localTypes).collect(Collectors.toList());
+        return Stream.concat(memberTypes, localTypes).collect(Collectors.toList());
+    }
 
-        return allTypes.isEmpty()
-            ? Stream.empty()
-            : Stream.concat
-                (allTypes.stream(), allTypes.stream().flatMap(this::allInnerTypes));
+    private static void pushAll(Deque<TypeElement> worklist, Collection<TypeElement> types) {
+        for (Iterator<TypeElement> it = new ArrayDeque<>(types).descendingIterator(); it.hasNext(); ) {
+            worklist.push(it.next());
+        }
     }
 
     private Optional<HktDecl> asHktDecl(TypeElement tEl) {
@@ -277,7 +398,21 @@ public final class HktProcessor extends AbstractProcessor {
         return allSuperTypes(type).map(this::asHktInterface).flatMap(Opt::asStream).findFirst()
             .filter(hktInterface ->
                     allSuperTypes(type).noneMatch(s -> !Types.isSubtype(hktInterface, s)
-                        && findImplementedHktInterface(s.asElement().asType()).isPresent()));
+                        && implementsHktInterface(s)));
+    }
+
+    private boolean implementsHktInterface(DeclaredType declaredType) {
+        final TypeMirror type = declaredType.asElement().asType();
+        final Supplier<Boolean> implementsHktInterface = () -> findImplementedHktInterface(type).isPresent();
+
+        return Visitors.asTypeElement.visit(declaredType.asElement())
+            .flatMap(tel -> Opt.or(
+                JdkSpecificApi.filter(jdkSpecificApi -> !jdkSpecificApi.isFromSource(tel))
+                    .flatMap(__ -> libraryIndex(Elts.getPackageOf(tel)))
+                    .flatMap(index -> index.isTypeConstructor(processingEnv.getFiler(), binaryName(tel))),
+                () -> LibraryFacts.map(libraryFacts ->
+                    libraryFacts.implementsHktInterface(tel, implementsHktInterface, () -> allSuperTypes(type)))))
+            .orElseGet(implementsHktInterface);
     }
 
     private Stream<DeclaredType> allSuperTypes(TypeMirror typeMirror) {
@@ -296,29 +431,31 @@ public final class HktProcessor extends AbstractProcessor {
     private IO<Unit> reportErrors(HktDecl hktDecl, List<HkTypeError> errors) {
         final TypeElement typeElement = _HktDecl.getTypeConstructor(hktDecl);
         final HktConf conf = _HktDecl.getConf(hktDecl);
+        // in generate mode, invalid encodings are only skipped: they are still reported, but do not fail the build.
+        final Diagnostic.Kind kind = mode.checks() ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING;
 
         final Stream<IO<Unit>> effects = errors.stream().map(_HkTypeError.cases()
             .HKTInterfaceDeclIsRawType_(IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, hKTInterfaceDeclIsRawTypeErrorMessage(typeElement, conf), typeElement)))
+                (kind, hKTInterfaceDeclIsRawTypeErrorMessage(typeElement, conf), typeElement)))
 
             .HKTypesNeedAtLeastOneTypeParameter_(IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, hKTypesNeedAtLeastOneTypeParameterErrorMessage(typeElement), typeElement)))
+                (kind, hKTypesNeedAtLeastOneTypeParameterErrorMessage(typeElement), typeElement)))
 
             .WrongHKTInterface_(IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, wrongHKTInterfaceErrorMessage(typeElement, conf), typeElement)))
+                (kind, wrongHKTInterfaceErrorMessage(typeElement, conf), typeElement)))
 
             .NotMatchingTypeParams(typeParameterElements -> IO.effect(() ->
                 typeParameterElements.forEach(typeParameterElement -> Messager.printMessage
-                    (Diagnostic.Kind.ERROR, notMatchingTypeParamErrorMessage(typeElement, conf), typeParameterElement))))
+                    (kind, notMatchingTypeParamErrorMessage(typeElement, conf), typeParameterElement))))
 
             .TCWitnessMustBeNestedClassOrClass_(IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, tcWitnessMustBeNestedClassOrClassErrorMessage(typeElement, conf), typeElement)))
+                (kind, tcWitnessMustBeNestedClassOrClassErrorMessage(typeElement, conf), typeElement)))
 
             .NestedTCWitnessMustBeSimpleType(tcWitnessElement -> IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, nestedTCWitnessMustBeSimpleTypeErrorMessage(), tcWitnessElement)))
+                (kind, nestedTCWitnessMustBeSimpleTypeErrorMessage(), tcWitnessElement)))
 
             .NestedTCWitnessMustBeStaticFinal(tcWitnessElement -> IO.effect(() -> Messager.printMessage
-                (Diagnostic.Kind.ERROR, nestedTCWitnessMustBePublicStaticErrorMessage(typeElement), tcWitnessElement))));
+                (kind, nestedTCWitnessMustBePublicStaticErrorMessage(typeElement), tcWitnessElement))));
 
         return IO.sequenceStream_(effects);
     }
@@ -402,42 +539,57 @@ public final class HktProcessor extends AbstractProcessor {
     }
 
     private Function<HktConf, HktConf> hktConfDefaultMod(Element elt) {
-        Function<HktConf, HktConf> conf = elt.getAnnotationMirrors()
+        Function<HktConf, HktConf> conf = Opt.cata(Optional.of(elt).filter(PackageElement.class::isInstance).map(PackageElement.class::cast)
+                .flatMap(pkg -> libraryIndex(pkg).flatMap(index ->
+                    index.config(processingEnv.getFiler(), pkg.getQualifiedName().toString())))
+            , config -> hktConfMod(config)
+            , () -> Opt.cata(LibraryFacts
+                , libraryFacts -> libraryFacts.hktConfMod(elt, () -> hktConfMod(elt))
+                , () -> hktConfMod(elt)));
+
+        return Opt.cata(parentElt(elt),
+            parentElt -> conf.compose(hktConfDefaultMod(parentElt)),
+            () -> conf);
+    }
+
+    private Function<HktConf, HktConf> hktConfMod(Element elt) {
+        return hktConfMod(hktConfigValues(elt));
+    }
+
+    /**
+     * @return the explicit {@link HktConfig} values of {@code elt}, by annotation method name.
+     */
+    private Map<String, String> hktConfigValues(Element elt) {
+        final Map<String, String> values = new TreeMap<>();
+        elt.getAnnotationMirrors()
             .stream()
             .filter(am -> am.getAnnotationType().asElement().equals(this.HktConfigElt))
-            .map(am -> {
-                Map<? extends ExecutableElement, ? extends AnnotationValue> explicitValues = am.getElementValues();
-
-                Optional<Function<HktConf, HktConf>> witnessTypeName = unNull(explicitValues.get(witnessTypeNameConfMethod)).map(
-                    value -> _HktConf.setWitnessTypeName((String) Visitors.getAnnotationValue.visit(value)));
+            .findAny()
+            .ifPresent(am -> am.getElementValues().forEach((method, value) -> values.put(
+                method.getSimpleName().toString(), (String) Visitors.getAnnotationValue.visit(value))));
+        return values;
+    }
 
-                Optional<Function<HktConf, HktConf>> generateIn = unNull(explicitValues.get(generateInConfMethod)).map(
-                    value -> _HktConf.setClassName((String) Visitors.getAnnotationValue.visit(value)));
+    private static Function<HktConf, HktConf> hktConfMod(Map<String, String> hktConfigValues) {
+        Optional<Function<HktConf, HktConf>> witnessTypeName = unNull(hktConfigValues.get("witnessTypeName")).map(
+            _HktConf::setWitnessTypeName);
 
-                Optional<Function<HktConf, HktConf>> withVisibility = unNull(explicitValues.get(withVisibilityConfMethod)).map(
-                    value -> _HktConf.setVisibility(
-                        HktConfig.Visibility.valueOf((String) Visitors.getAnnotationValue.visit(value))));
+        Optional<Function<HktConf, HktConf>> generateIn = unNull(hktConfigValues.get("generateIn")).map(
+            _HktConf::setClassName);
 
-                Optional<Function<HktConf, HktConf>> coerceMethodName = unNull(
-                    explicitValues.get(coerceMethodNameConfMethod)).map(
-                    value -> _HktConf.setCoerceMethodTemplate((String) Visitors.getAnnotationValue.visit(value)));
+        Optional<Function<HktConf, HktConf>> withVisibility = unNull(hktConfigValues.get("withVisibility")).map(
+            value -> _HktConf.setVisibility(HktConfig.Visibility.valueOf(value)));
 
-                Optional<Function<HktConf, HktConf>> typeEqMethodName = unNull(
-                    explicitValues.get(typeEqMethodNameConfMethod)).map(
-                    value -> _HktConf.setTypeEqMethodTemplate((String) Visitors.getAnnotationValue.visit(value)));
+        Optional<Function<HktConf, HktConf>> coerceMethodName = unNull(hktConfigValues.get("coerceMethodName")).map(
+            _HktConf::setCoerceMethodTemplate);
 
-                return Stream.of(witnessTypeName, generateIn, withVisibility, coerceMethodName, typeEqMethodName)
-                    .flatMap(Opt::asStream)
-                    .reduce(Function::andThen)
-                    .orElse(Function.identity());
+        Optional<Function<HktConf, HktConf>> typeEqMethodName = unNull(hktConfigValues.get("typeEqMethodName")).map(
+            _HktConf::setTypeEqMethodTemplate);
 
-            })
-            .findAny()
+        return Stream.of(witnessTypeName, generateIn, withVisibility, coerceMethodName, typeEqMethodName)
+            .flatMap(Opt::asStream)
+            .reduce(Function::andThen)
             .orElse(Function.identity());
-
-        return Opt.cata(parentElt(elt),
-            parentElt -> conf.compose(hktConfDefaultMod(parentElt)),
-            () -> conf);
     }
 
     private Optional<Element> parentElt(Element elt) {
@@ -453,13 +605,5 @@ public final class HktProcessor extends AbstractProcessor {
             : unNull(Elts.getPackageElement(elt.getQualifiedName().subSequence(0, lastDot)));
     }
 
-    private static ExecutableElement unsafeGetExecutableElement(TypeElement typeElement, String methodName) {
-        return (ExecutableElement) typeElement.getEnclosedElements()
-            .stream()
-            .filter(e -> e.getSimpleName().contentEquals(methodName))
-            .findFirst()
-            .orElseThrow(() -> new NoSuchElementException(typeElement + "#" + methodName));
-    }
-
 }
 
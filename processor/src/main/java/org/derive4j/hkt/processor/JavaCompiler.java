@@ -25,6 +25,8 @@ final class JavaCompiler {
 
     interface JdkSpecificApi {
         Stream<TypeElement> localTypes(TypeElement tel);
+
+        boolean isFromSource(Element elt);
     }
 
     static final class OpenJdkSpecificApi implements JdkSpecificApi {
@@ -60,6 +62,11 @@ final class JavaCompiler {
                     .orElseGet(Stream::empty));
         }
 
+        @Override
+        public boolean isFromSource(Element elt) {
+            return JTrees.getPath(elt) != null;
+        }
+
         private static <T extends StatementTree > Boolean isClassDecl(T st) {
             return st.accept(ClassTreeVisitor.self, unit);
         }
@@ -0,0 +1,264 @@
+package org.derive4j.hkt.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.Elements;
+import javax.tools.StandardLocation;
+import org.derive4j.hkt.processor.DataTypes.HktConf;
+import org.derive4j.hkt.processor.DataTypes.LibKey;
+import org.derive4j.hkt.processor.DataTypes.Opt;
+import org.derive4j.hkt.processor.DataTypes.P2;
+import org.derive4j.hkt.processor.JavaCompiler.JdkSpecificApi;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Opt-in cache of facts about library types and packages (ie. read from class files of the classpath), shared by all the
+ * compilations run in the same JVM, eg. by gradle compiler daemons or bazel persistent workers.
+ * Facts are keyed by the classpath entry they come from and by the hash of that entry (or of the class file, for
+ * directories), and evicted in LRU order.
+ */
+final class LibraryCache {
+
+    /** Maximum number of cached library elements, enables the cache when present. */
+    static final String maxEntriesOption = "hkt.libraryCache";
+
+    /** Reports the numbers of reused and computed library facts at the end of each compilation. */
+    static final String statsOption = "hkt.libraryCache.stats";
+
+    private static LibraryCache processWide;
+
+    private final Map<LibKey, Facts> facts;
+
+    private final Map<Path, long[]> entryHashes = new ConcurrentHashMap<>();
+
+    private volatile int maxEntries;
+
+    LibraryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        facts = new LinkedHashMap<LibKey, Facts>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LibKey, Facts> eldest) {
+                return size() > LibraryCache.this.maxEntries;
+            }
+        };
+    }
+
+    static Optional<Integer> maxEntries(Map<String, String> options) {
+        return Opt.fromStr(options.get(maxEntriesOption)).flatMap(value -> {
+            try {
+                return Optional.of(Integer.parseInt(value.trim())).filter(max -> max > 0);
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    static synchronized LibraryCache processWide(int maxEntries) {
+        if (processWide == null) {
+            processWide = new LibraryCache(maxEntries);
+        } else {
+            processWide.maxEntries = maxEntries;
+        }
+        return processWide;
+    }
+
+    Session session(Elements elts, Filer filer, JdkSpecificApi jdkSpecificApi) {
+        return new Session(elts, filer, jdkSpecificApi);
+    }
+
+    private Facts facts(LibKey key) {
+        synchronized (facts) {
+            return facts.computeIfAbsent(key, __ -> new Facts());
+        }
+    }
+
+    private Optional<Long> hash(Path entry) {
+        try {
+            final long size = Files.size(entry);
+            final long lastModified = Files.getLastModifiedTime(entry).toMillis();
+            final long[] known = entryHashes.get(entry);
+            if (known != null && known[0] == size && known[1] == lastModified) {
+                return Optional.of(known[2]);
+            }
+            final CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(entry)) {
+                final byte[] buffer = new byte[8192];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    crc.update(buffer, 0, read);
+                }
+            }
+            entryHashes.put(entry, new long[] { size, lastModified, crc.getValue() });
+            return Optional.of(crc.getValue());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param classFileUri the location of {@code classFile}.
+     * @param classFile a class file path, relative to its classpath entry.
+     * @return the classpath entry (jar or directory) of the class file, and the file whose hash identifies its version:
+     * the jar itself, or the class file for directories.
+     */
+    private static Optional<P2<Path, Path>> classpathEntry(URI classFileUri, String classFile) {
+        switch (classFileUri.getScheme()) {
+            case "jar":
+                return jarOf(classFileUri).map(jar -> _P2.of(jar, jar));
+            case "file":
+                final Path file = Paths.get(classFileUri);
+                Path directory = file;
+                for (int depth = classFile.split("/").length; depth > 0 && directory != null; depth--) {
+                    directory = directory.getParent();
+                }
+                return Opt.unNull(directory).map(dir -> _P2.of(dir, file));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the jar of a resource read from a jar, or empty for resources read from anywhere else (eg. a directory).
+     */
+    static Optional<Path> jarOf(URI resourceUri) {
+        if (!"jar".equals(resourceUri.getScheme())) {
+            return Optional.empty();
+        }
+        final String jarUri = resourceUri.getRawSchemeSpecificPart();
+        final int separator = jarUri.indexOf("!/");
+        return separator == -1
+            ? Optional.empty()
+            : Optional.of(Paths.get(URI.create(jarUri.substring(0, separator))));
+    }
+
+    private static final class Facts {
+        volatile Function<HktConf, HktConf> hktConfMod;
+        volatile HktFact hktFact;
+    }
+
+    private static final class HktFact {
+        final boolean implementsHktInterface;
+        final List<LibKey> superTypes;
+
+        HktFact(boolean implementsHktInterface, List<LibKey> superTypes) {
+            this.implementsHktInterface = implementsHktInterface;
+            this.superTypes = superTypes;
+        }
+    }
+
+    /**
+     * View of the cache for one compilation: classpath lookups are memoized for its duration.
+     */
+    final class Session {
+        private final Elements Elts;
+        private final Filer Filer;
+        private final JdkSpecificApi JdkSpecificApi;
+
+        private final Map<String, Optional<LibKey>> libKeys = new HashMap<>();
+        private final Map<Path, Optional<Long>> hashes = new HashMap<>();
+
+        private int reusedFacts;
+        private int computedFacts;
+
+        private Session(Elements elts, Filer filer, JdkSpecificApi jdkSpecificApi) {
+            Elts = elts;
+            Filer = filer;
+            JdkSpecificApi = jdkSpecificApi;
+        }
+
+        /**
+         * @param elt a package or type element.
+         * @param compute the {@link org.derive4j.hkt.HktConfig} of {@code elt}, ignoring its parent elements.
+         */
+        Function<HktConf, HktConf> hktConfMod(Element elt, Supplier<Function<HktConf, HktConf>> compute) {
+            return Opt.cata(libKey(elt).map(LibraryCache.this::facts), facts -> {
+                Function<HktConf, HktConf> hktConfMod = facts.hktConfMod;
+                if (hktConfMod == null) {
+                    hktConfMod = compute.get();
+                    facts.hktConfMod = hktConfMod;
+                    computedFacts++;
+                } else {
+                    reusedFacts++;
+                }
+                return hktConfMod;
+            }, compute);
+        }
+
+        /**
+         * @param tel a type element.
+         * @param compute whether {@code tel} implements a hkt interface.
+         * @param superTypes all super types of {@code tel}, that the computed fact depends on.
+         */
+        boolean implementsHktInterface(TypeElement tel, Supplier<Boolean> compute, Supplier<Stream<DeclaredType>> superTypes) {
+            return Opt.cata(libKey(tel).map(LibraryCache.this::facts), facts -> {
+                final HktFact known = facts.hktFact;
+                if (known != null && known.superTypes.stream().allMatch(s -> lookup(_LibKey.getElementName(s)).equals(Optional.of(s)))) {
+                    reusedFacts++;
+                    return known.implementsHktInterface;
+                }
+                final boolean implementsHktInterface = compute.get();
+                computedFacts++;
+                final List<Element> superTypeElts = superTypes.get().map(DeclaredType::asElement).collect(toList());
+                // Platform types are not on the classpath and never implement a hkt interface, but sources can change at any time:
+                if (superTypeElts.stream().noneMatch(JdkSpecificApi::isFromSource)) {
+                    facts.hktFact = new HktFact(implementsHktInterface,
+                        superTypeElts.stream().map(this::libKey).flatMap(Opt::asStream).collect(toList()));
+                }
+                return implementsHktInterface;
+            }, compute);
+        }
+
+        /**
+         * @return a summary of the facts of this compilation that were reused from the cache, and of those that were not.
+         */
+        String stats() {
+            return String.format("hkt library cache: %d facts reused, %d computed", reusedFacts, computedFacts);
+        }
+
+        private Optional<LibKey> libKey(Element elt) {
+            if (JdkSpecificApi.isFromSource(elt)) {
+                return Optional.empty();
+            }
+            return elt instanceof PackageElement
+                ? lookup(((PackageElement) elt).getQualifiedName().toString().replace('.', '/') + "/package-info.class")
+                : elt instanceof TypeElement
+                    ? lookup(Elts.getBinaryName((TypeElement) elt).toString().replace('.', '/') + ".class")
+                    : Optional.empty();
+        }
+
+        private Optional<LibKey> lookup(String classFile) {
+            return libKeys.computeIfAbsent(classFile, __ -> {
+                final int lastSlash = classFile.lastIndexOf('/');
+                try {
+                    final URI uri = Filer.getResource(StandardLocation.CLASS_PATH,
+                        lastSlash == -1 ? "" : classFile.substring(0, lastSlash).replace('/', '.'),
+                        classFile.substring(lastSlash + 1)).toUri();
+
+                    return classpathEntry(uri, classFile).flatMap(entry -> hashes.computeIfAbsent(entry._2(), LibraryCache.this::hash)
+                        .map(hash -> _LibKey.of(_LibFile.of(entry._1().toString(), hash), classFile)));
+                } catch (IOException | IllegalArgumentException e) {
+                    return Optional.empty();
+                }
+            });
+        }
+    }
+}
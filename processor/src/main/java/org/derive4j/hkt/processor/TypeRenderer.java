@@ -0,0 +1,316 @@
+package org.derive4j.hkt.processor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.SimpleTypeVisitor8;
+import org.derive4j.hkt.__;
+import org.derive4j.hkt.processor.DataTypes.Unit;
+
+import static java.util.stream.Collectors.toList;
+import static org.derive4j.hkt.processor.DataTypes.Opt.unNull;
+
+/**
+ * Structured rendering of the types of generated classes: types are pulled once from the javac model into
+ * {@link TypeRef} values (class names being memoized per type element), that can then be rendered from any thread,
+ * straight into the output, with class names resolved against the {@link Imports} of the generated class.
+ */
+final class TypeRenderer {
+
+    private static final String hktPackage = __.class.getPackage().getName();
+
+    private final Elements Elts;
+
+    private final Map<TypeElement, ClassName> classNames = new HashMap<>();
+
+    private final SimpleTypeVisitor8<TypeRef, Unit> toTypeRef = new SimpleTypeVisitor8<TypeRef, Unit>() {
+        @Override
+        protected TypeRef defaultAction(TypeMirror tm, Unit __) {
+            return new Verbatim(tm.toString());
+        }
+
+        @Override
+        public TypeRef visitDeclared(DeclaredType t, Unit __) {
+            return new ClassRef(className(Visitors.asTypeElement.visit(t.asElement()).get()),
+                Visitors.asDeclaredType.visit(t.getEnclosingType()).filter(TypeRenderer::isParameterized).map(TypeRenderer.this::typeRef),
+                typeRefs(t.getTypeArguments()));
+        }
+
+        @Override
+        public TypeRef visitTypeVariable(TypeVariable t, Unit __) {
+            return new Verbatim(t.asElement().getSimpleName().toString());
+        }
+
+        @Override
+        public TypeRef visitWildcard(WildcardType t, Unit __) {
+            return new WildcardRef(unNull(t.getExtendsBound()).map(TypeRenderer.this::typeRef),
+                unNull(t.getSuperBound()).map(TypeRenderer.this::typeRef));
+        }
+
+        @Override
+        public TypeRef visitArray(ArrayType t, Unit __) {
+            return new ArrayRef(typeRef(t.getComponentType()));
+        }
+    };
+
+    TypeRenderer(Elements elts) {
+        Elts = elts;
+    }
+
+    TypeRef typeRef(TypeMirror tm) {
+        return toTypeRef.visit(tm);
+    }
+
+    TypeParam typeParam(TypeParameterElement tpe) {
+        return new TypeParam(tpe.getSimpleName().toString(), tpe.getBounds()
+            .stream()
+            .map(this::typeRef)
+            .filter(bound -> !(bound instanceof ClassRef && ((ClassRef) bound).name.qualifiedName.equals("java.lang.Object")))
+            .collect(toList()));
+    }
+
+    ClassName className(TypeElement tel) {
+        return classNames.computeIfAbsent(tel, __ -> {
+            TypeElement topLevel = tel;
+            while (topLevel.getEnclosingElement() instanceof TypeElement) {
+                topLevel = (TypeElement) topLevel.getEnclosingElement();
+            }
+            return new ClassName(Elts.getPackageOf(tel).getQualifiedName().toString(), topLevel.getSimpleName().toString(),
+                tel.getSimpleName().toString(), tel.getQualifiedName().toString());
+        });
+    }
+
+    /**
+     * Resolves the names visible in a generated class: its own name first, then the classes of its package that it
+     * references, then the explicit imports of {@code imported} classes (that are skipped in case of name clash) and
+     * finally the {@code org.derive4j.hkt.*} classes. Other classes are referenced by their qualified name.
+     */
+    Imports imports(String packageName, String simpleName, Collection<ClassName> imported, Collection<ClassName> referenced) {
+        final Map<String, String> visibleNames = new HashMap<>();
+        final Set<String> explicitImports = new LinkedHashSet<>();
+
+        visibleNames.put(simpleName, qualify(packageName, simpleName));
+
+        referenced.stream()
+            .filter(name -> name.packageName.equals(packageName))
+            .forEach(name -> visibleNames.putIfAbsent(name.topLevelSimpleName, name.topLevelQualifiedName));
+
+        imported.stream()
+            .filter(name -> !name.packageName.equals(packageName))
+            .forEach(name -> {
+                if (visibleNames.putIfAbsent(name.topLevelSimpleName, name.topLevelQualifiedName) == null) {
+                    explicitImports.add(name.topLevelQualifiedName);
+                }
+            });
+
+        referenced.stream()
+            .filter(name -> name.packageName.equals(hktPackage))
+            .filter(name -> !visibleNames.containsKey(name.topLevelSimpleName))
+            .filter(name -> Elts.getTypeElement(qualify(packageName, name.topLevelSimpleName)) == null)
+            .forEach(name -> visibleNames.put(name.topLevelSimpleName, name.topLevelQualifiedName));
+
+        return new Imports(new ArrayList<>(explicitImports), visibleNames);
+    }
+
+    private List<TypeRef> typeRefs(List<? extends TypeMirror> tms) {
+        return tms.stream().map(this::typeRef).collect(toList());
+    }
+
+    private static boolean isParameterized(DeclaredType dt) {
+        return !dt.getTypeArguments().isEmpty()
+            || Visitors.asDeclaredType.visit(dt.getEnclosingType()).filter(TypeRenderer::isParameterized).isPresent();
+    }
+
+    private static String qualify(String packageName, String simpleName) {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    static final class ClassName {
+        final String packageName;
+        final String topLevelSimpleName;
+        final String simpleName;
+        final String qualifiedName;
+        /** The name relative to the package, eg. {@code Outer.Inner}. */
+        final String relativeName;
+        final String topLevelQualifiedName;
+
+        ClassName(String packageName, String topLevelSimpleName, String simpleName, String qualifiedName) {
+            this.packageName = packageName;
+            this.topLevelSimpleName = topLevelSimpleName;
+            this.simpleName = simpleName;
+            this.qualifiedName = qualifiedName;
+            relativeName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+            topLevelQualifiedName = qualify(packageName, topLevelSimpleName);
+        }
+    }
+
+    /**
+     * The names visible in a generated class.
+     */
+    static final class Imports {
+        final List<String> explicitImports;
+        private final Map<String, String> visibleNames;
+
+        private Imports(List<String> explicitImports, Map<String, String> visibleNames) {
+            this.explicitImports = explicitImports;
+            this.visibleNames = visibleNames;
+        }
+
+        /**
+         * @param typeVariables the type variables in scope, that shadow classes of the same name.
+         */
+        Scope scope(Set<String> typeVariables) {
+            return name -> name.topLevelQualifiedName.equals(visibleNames.get(name.topLevelSimpleName))
+                && !typeVariables.contains(name.topLevelSimpleName) ? name.relativeName : name.qualifiedName;
+        }
+    }
+
+    interface Scope {
+        String nameOf(ClassName name);
+    }
+
+    abstract static class TypeRef {
+        private TypeRef() {}
+
+        abstract void render(Scope scope, StringBuilder out);
+
+        abstract void forEachClassName(Consumer<ClassName> action);
+    }
+
+    static final class ClassRef extends TypeRef {
+        final ClassName name;
+        private final Optional<TypeRef> parameterizedEnclosingType;
+        private final List<TypeRef> typeArguments;
+
+        ClassRef(ClassName name, Optional<TypeRef> parameterizedEnclosingType, List<TypeRef> typeArguments) {
+            this.name = name;
+            this.parameterizedEnclosingType = parameterizedEnclosingType;
+            this.typeArguments = typeArguments;
+        }
+
+        @Override
+        void render(Scope scope, StringBuilder out) {
+            if (parameterizedEnclosingType.isPresent()) {
+                parameterizedEnclosingType.get().render(scope, out);
+                out.append('.').append(name.simpleName);
+            } else {
+                out.append(scope.nameOf(name));
+            }
+            if (!typeArguments.isEmpty()) {
+                out.append('<');
+                for (int i = 0; i < typeArguments.size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    typeArguments.get(i).render(scope, out);
+                }
+                out.append('>');
+            }
+        }
+
+        @Override
+        void forEachClassName(Consumer<ClassName> action) {
+            action.accept(name);
+            parameterizedEnclosingType.ifPresent(enclosing -> enclosing.forEachClassName(action));
+            typeArguments.forEach(arg -> arg.forEachClassName(action));
+        }
+    }
+
+    private static final class WildcardRef extends TypeRef {
+        private final Optional<TypeRef> extendsBound;
+        private final Optional<TypeRef> superBound;
+
+        WildcardRef(Optional<TypeRef> extendsBound, Optional<TypeRef> superBound) {
+            this.extendsBound = extendsBound;
+            this.superBound = superBound;
+        }
+
+        @Override
+        void render(Scope scope, StringBuilder out) {
+            out.append('?');
+            extendsBound.ifPresent(bound -> bound.render(scope, out.append(" extends ")));
+            superBound.ifPresent(bound -> bound.render(scope, out.append(" super ")));
+        }
+
+        @Override
+        void forEachClassName(Consumer<ClassName> action) {
+            extendsBound.ifPresent(bound -> bound.forEachClassName(action));
+            superBound.ifPresent(bound -> bound.forEachClassName(action));
+        }
+    }
+
+    private static final class ArrayRef extends TypeRef {
+        private final TypeRef componentType;
+
+        ArrayRef(TypeRef componentType) {
+            this.componentType = componentType;
+        }
+
+        @Override
+        void render(Scope scope, StringBuilder out) {
+            componentType.render(scope, out);
+            out.append("[]");
+        }
+
+        @Override
+        void forEachClassName(Consumer<ClassName> action) {
+            componentType.forEachClassName(action);
+        }
+    }
+
+    /**
+     * Type variables, primitive types, and whatever else is rendered as javac prints it.
+     */
+    private static final class Verbatim extends TypeRef {
+        private final String type;
+
+        Verbatim(String type) {
+            this.type = type;
+        }
+
+        @Override
+        void render(Scope scope, StringBuilder out) {
+            out.append(type);
+        }
+
+        @Override
+        void forEachClassName(Consumer<ClassName> action) {
+        }
+    }
+
+    static final class TypeParam {
+        final String name;
+        private final List<TypeRef> bounds;
+
+        TypeParam(String name, List<TypeRef> bounds) {
+            this.name = name;
+            this.bounds = bounds;
+        }
+
+        void render(Scope scope, StringBuilder out) {
+            out.append(name);
+            for (int i = 0; i < bounds.size(); i++) {
+                out.append(i == 0 ? " extends " : " & ");
+                bounds.get(i).render(scope, out);
+            }
+        }
+
+        void forEachClassName(Consumer<ClassName> action) {
+            bounds.forEach(bound -> bound.forEachClassName(action));
+        }
+    }
+}
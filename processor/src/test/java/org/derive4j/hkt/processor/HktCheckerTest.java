@@ -0,0 +1,70 @@
+package org.derive4j.hkt.processor;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class HktCheckerTest {
+
+  @Rule
+  public TemporaryFolder sources = new TemporaryFolder();
+
+  @Test
+  public void checks_only_the_given_compilation_units() throws Exception {
+    Path sourceDir = sources.getRoot().toPath();
+    Path bar = copyResource("dummy/dumb/Bar.java", sourceDir);
+    Path box = copyResource("dummy/valid/Box.java", sourceDir);
+
+    List<Path> classpath = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+        .map(Paths::get)
+        .collect(Collectors.toList());
+
+    try (HktChecker checker = HktChecker.of(Arrays.asList(sourceDir), classpath)) {
+      assertEquals(12, errors(checker.checkAll()));
+      assertEquals(12, errors(checker.check(Arrays.asList(bar))));
+      assertEquals(0, errors(checker.check(Arrays.asList(box))));
+    }
+  }
+
+  @Test
+  public void reports_compilation_errors() throws Exception {
+    Path sourceDir = sources.getRoot().toPath();
+    Path broken = sourceDir.resolve("dummy/broken/Broken.java");
+    Files.createDirectories(broken.getParent());
+    Files.write(broken, "package dummy.broken;\n\npublic class Broken extends Missing {}\n".getBytes(StandardCharsets.UTF_8));
+
+    List<Path> classpath = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+        .map(Paths::get)
+        .collect(Collectors.toList());
+
+    try (HktChecker checker = HktChecker.of(Arrays.asList(sourceDir), classpath)) {
+      assertEquals(1, errors(checker.check(Arrays.asList(broken))));
+    }
+  }
+
+  private static long errors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    return diagnostics.stream().filter(d -> d.getKind() == Diagnostic.Kind.ERROR).count();
+  }
+
+  private static Path copyResource(String resource, Path sourceDir) throws Exception {
+    Path target = sourceDir.resolve(resource);
+    Files.createDirectories(target.getParent());
+    try (InputStream in = HktCheckerTest.class.getClassLoader().getResourceAsStream(resource)) {
+      Files.copy(in, target);
+    }
+    return target;
+  }
+}
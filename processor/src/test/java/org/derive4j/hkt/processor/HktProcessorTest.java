@@ -0,0 +1,291 @@
+package org.derive4j.hkt.processor;
+
+import com.google.common.truth.Truth;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.derive4j.hkt.HktVerifier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+
+public class HktProcessorTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void bad_encodings() {
+    Truth.assert_()
+        .about(javaSource())
+        .that(JavaFileObjects.forResource("dummy/dumb/Bar.java"))
+        .processedWith(new HktProcessor())
+        .failsToCompile()
+        .withErrorCount(12);
+  }
+
+  @Test
+  public void check_mode_reports_errors_without_generating() {
+    Truth.assert_()
+        .about(javaSource())
+        .that(JavaFileObjects.forResource("dummy/dumb/Bar.java"))
+        .withCompilerOptions("-Ahkt.mode=check")
+        .processedWith(new HktProcessor())
+        .failsToCompile()
+        .withErrorCount(12);
+
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .withOptions("-Ahkt.mode=check")
+        .compile(JavaFileObjects.forResource("dummy/valid/Box.java"));
+
+    Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+    Truth.assertThat(compilation.generatedSourceFiles()).isEmpty();
+  }
+
+  @Test
+  public void generate_mode_reports_errors_as_warnings() {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .withOptions("-Ahkt.mode=generate")
+        .compile(JavaFileObjects.forResource("dummy/dumb/Bar.java"));
+
+    Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+    Truth.assertThat(compilation.warnings()).hasSize(12);
+  }
+
+  @Test
+  public void verifier_follows_the_processor_rules() throws IOException {
+    for (String resource : Arrays.asList("dummy/dumb/Bar.java", "dummy/valid/Box.java", "dummy/order/Root.java",
+        "dummy/verifier/Cases.java")) {
+      Compilation processed = Compiler.javac()
+          .withProcessors(new HktProcessor())
+          .withOptions("-Ahkt.mode=check")
+          .compile(JavaFileObjects.forResource(resource));
+      Compilation compiled = Compiler.javac().compile(JavaFileObjects.forResource(resource));
+      Truth.assertThat(compiled.status()).isEqualTo(Compilation.Status.SUCCESS);
+
+      int verifierErrors = 0;
+      for (Class<?> clazz : loadClasses(compiled)) {
+        verifierErrors += HktVerifier.errors(clazz).size();
+      }
+      Truth.assertWithMessage(resource).that(verifierErrors).isEqualTo(processed.errors().size());
+    }
+  }
+
+  @Test
+  public void library_cache_is_reused_across_compilations() throws IOException {
+    // a library without published index, so that its facts can only come from the cache:
+    Compilation library = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .withOptions("-Ahkt.mode=check")
+        .compile(JavaFileObjects.forResource("dummy/lib/Base.java"));
+    Truth.assertThat(library.status()).isEqualTo(Compilation.Status.SUCCESS);
+    List<File> classpath = classpathWith(classOutput(library));
+
+    // a cache of its own, so that other tests are not affected:
+    LibraryCache cache = new LibraryCache(100);
+    List<String> stats = new ArrayList<>();
+    for (int compilation = 0; compilation < 2; compilation++) {
+      Compilation downstream = Compiler.javac()
+          .withProcessors(new HktProcessor(maxEntries -> cache))
+          .withClasspath(classpath)
+          .withOptions("-Ahkt.libraryCache=100", "-Ahkt.libraryCache.stats")
+          .compile(JavaFileObjects.forResource("dummy/lib/sub/Derived.java"));
+      Truth.assertThat(downstream.status()).isEqualTo(Compilation.Status.SUCCESS);
+      downstream.notes().forEach(note -> stats.add(note.getMessage(null)));
+    }
+    // the second compilation reads the facts about Base that were computed by the first one:
+    Truth.assertThat(stats).containsExactly(
+        "hkt library cache: 0 facts reused, 1 computed",
+        "hkt library cache: 1 facts reused, 0 computed").inOrder();
+  }
+
+  @Test
+  public void clashing_simple_names_are_qualified() throws IOException {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .compile(JavaFileObjects.forResource("dummy/clash/List.java"),
+            JavaFileObjects.forResource("dummy/clash/other/List.java"));
+
+    Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+    String hkt = compilation.generatedSourceFile("dummy.clash.Hkt").get().getCharContent(false).toString();
+    Truth.assertThat(hkt).doesNotContain("import dummy.clash.other.List;");
+    Truth.assertThat(hkt).contains("static <A> List<A> asList(__<List.µ,A> hkt)");
+    Truth.assertThat(hkt).contains("static <A> dummy.clash.other.List<A> asOtherList(__<dummy.clash.other.List.µ,A> hkt)");
+  }
+
+  @Test
+  public void inner_types_are_generated_level_by_level() throws IOException {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .compile(JavaFileObjects.forResource("dummy/order/Root.java"));
+
+    Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+    String hkt = compilation.generatedSourceFile("dummy.order.Hkt").get().getCharContent(false).toString();
+    // a type, then its inner types, then the inner types of each of them:
+    Truth.assertThat(hkt.indexOf("asRoot(")).isLessThan(hkt.indexOf("asFirst("));
+    Truth.assertThat(hkt.indexOf("asFirst(")).isLessThan(hkt.indexOf("asSecond("));
+    Truth.assertThat(hkt.indexOf("asSecond(")).isLessThan(hkt.indexOf("asGrandchild("));
+  }
+
+  @Test
+  public void published_index_is_read_by_downstream_compilations() throws IOException {
+    Compilation library = compileConfigLibrary();
+    Truth.assertThat(library.generatedFile(StandardLocation.CLASS_OUTPUT, "dummy/config/derive4j-hkt.index")
+        .get().getCharContent(false).toString()).contains("config.coerceMethodName=to{ClassName}");
+    Truth.assertThat(library.generatedFile(StandardLocation.CLASS_OUTPUT, "dummy/valid/derive4j-hkt.index")
+        .get().getCharContent(false).toString()).contains("typeConstructor.dummy.valid.Box=dummy.valid.Box.\\u00b5");
+
+    // the published index takes precedence over the library package-info:
+    Path libraryOutput = classOutput(library);
+    tamperConfigIndex(libraryOutput);
+
+    Truth.assertThat(generatedOption(classpathWith(jar(libraryOutput)))).contains("intoOption(");
+  }
+
+  @Test
+  public void indexes_are_only_trusted_for_the_classes_of_their_jar() throws IOException {
+    Path libraryOutput = classOutput(compileConfigLibrary());
+    tamperConfigIndex(libraryOutput);
+
+    // an index in a directory (eg. a stale or partially written class output) is ignored:
+    Truth.assertThat(generatedOption(classpathWith(libraryOutput))).contains("toOption(");
+
+    // as is the index of a jar that does not contain the package-info that is read (eg. a split package):
+    Path indexJar = jar(libraryOutput, "dummy/config/derive4j-hkt.index");
+    List<File> classpath = classpathWith(libraryOutput);
+    classpath.add(1, indexJar.toFile());
+    Files.delete(libraryOutput.resolve("dummy/config/derive4j-hkt.index"));
+    Truth.assertThat(generatedOption(classpath)).contains("toOption(");
+  }
+
+  private static Compilation compileConfigLibrary() {
+    Compilation library = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .compile(JavaFileObjects.forResource("dummy/config/package-info.java"),
+            JavaFileObjects.forResource("dummy/valid/Box.java"));
+    Truth.assertThat(library.status()).isEqualTo(Compilation.Status.SUCCESS);
+    return library;
+  }
+
+  private static void tamperConfigIndex(Path libraryOutput) throws IOException {
+    Path configIndex = libraryOutput.resolve("dummy/config/derive4j-hkt.index");
+    Files.write(configIndex, new String(Files.readAllBytes(configIndex), StandardCharsets.UTF_8)
+        .replace("=to{ClassName}", "=into{ClassName}").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String generatedOption(List<File> classpath) throws IOException {
+    Compilation downstream = Compiler.javac()
+        .withProcessors(new HktProcessor())
+        .withClasspath(classpath)
+        .compile(JavaFileObjects.forResource("dummy/config/sub/Option.java"));
+
+    Truth.assertThat(downstream.status()).isEqualTo(Compilation.Status.SUCCESS);
+    return downstream.generatedSourceFile("dummy.config.sub.Hkt").get().getCharContent(false).toString();
+  }
+
+  /**
+   * Copies the class output of a compilation (classes and published indexes) to a temporary directory.
+   */
+  private Path classOutput(Compilation compilation) throws IOException {
+    Path output = temporaryFolder.newFolder().toPath();
+    for (JavaFileObject file : compilation.generatedFiles()) {
+      String path = file.toUri().getPath();
+      if (path.startsWith("/CLASS_OUTPUT/")) {
+        Path target = output.resolve(path.substring("/CLASS_OUTPUT/".length()));
+        Files.createDirectories(target.getParent());
+        try (InputStream in = file.openInputStream()) {
+          Files.copy(in, target);
+        }
+      }
+    }
+    return output;
+  }
+
+  private Path jar(Path directory) throws IOException {
+    return jar(directory, "");
+  }
+
+  /**
+   * Packages the files of {@code directory} whose path starts with {@code prefix} in a temporary jar.
+   */
+  private Path jar(Path directory, String prefix) throws IOException {
+    Path jar = temporaryFolder.newFile().toPath();
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (Path file : files) {
+        String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+        if (name.startsWith(prefix)) {
+          out.putNextEntry(new JarEntry(name));
+          Files.copy(file, out);
+          out.closeEntry();
+        }
+      }
+    }
+    return jar;
+  }
+
+  private static List<File> classpathWith(Path libraryOutput) {
+    List<File> classpath = new ArrayList<>();
+    classpath.add(libraryOutput.toFile());
+    for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      classpath.add(new File(entry));
+    }
+    return classpath;
+  }
+
+  private static List<Class<?>> loadClasses(Compilation compilation) throws IOException {
+    Map<String, byte[]> classFiles = new HashMap<>();
+    for (JavaFileObject file : compilation.generatedFiles()) {
+      String path = file.toUri().getPath();
+      if (file.getKind() == JavaFileObject.Kind.CLASS && path.startsWith("/CLASS_OUTPUT/")) {
+        try (InputStream in = file.openInputStream()) {
+          classFiles.put(path.substring("/CLASS_OUTPUT/".length(), path.length() - ".class".length()).replace('/', '.'),
+              in.readAllBytes());
+        }
+      }
+    }
+    ClassLoader classLoader = new ClassLoader(HktProcessorTest.class.getClassLoader()) {
+      @Override
+      protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] classFile = classFiles.get(name);
+        if (classFile == null) {
+          throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, classFile, 0, classFile.length);
+      }
+    };
+    List<Class<?>> classes = new ArrayList<>();
+    for (String name : classFiles.keySet()) {
+      try {
+        classes.add(classLoader.loadClass(name));
+      } catch (ClassNotFoundException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return classes;
+  }
+}
@@ -0,0 +1,36 @@
+package org.derive4j.hkt.processor;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+import org.derive4j.hkt.processor.DataTypes.IO;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IOTest {
+
+  @Test
+  public void left_nested_binds_run_in_constant_stack() throws IOException {
+    IO<Integer> io = IO.unit(0);
+    for (int i = 0; i < 100_000; i++) {
+      io = io.bind(n -> IO.unit(n + 1));
+    }
+    assertEquals(100_000, io.run().intValue());
+  }
+
+  @Test
+  public void right_nested_binds_run_in_constant_stack() throws IOException {
+    assertEquals(0, countDown(100_000).run().intValue());
+  }
+
+  @Test
+  public void long_sequences_run_in_constant_stack() throws IOException {
+    int[] count = new int[1];
+    IO.sequenceStream_(IntStream.range(0, 1_000_000).mapToObj(i -> IO.effect(() -> count[0]++))).run();
+    assertEquals(1_000_000, count[0]);
+  }
+
+  private static IO<Integer> countDown(int n) {
+    return IO.unit(n).bind(i -> i == 0 ? IO.unit(0) : countDown(i - 1));
+  }
+}
@@ -0,0 +1,7 @@
+package dummy.clash;
+
+import org.derive4j.hkt.__;
+
+public final class List<A> implements __<List.µ, A> {
+  public enum µ {}
+}
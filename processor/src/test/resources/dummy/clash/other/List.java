@@ -0,0 +1,9 @@
+package dummy.clash.other;
+
+import org.derive4j.hkt.HktConfig;
+import org.derive4j.hkt.__;
+
+@HktConfig(generateIn = "dummy.clash.Hkt", coerceMethodName = "asOtherList", typeEqMethodName = "otherList")
+public final class List<A> implements __<List.µ, A> {
+  public enum µ {}
+}
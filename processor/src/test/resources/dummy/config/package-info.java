@@ -0,0 +1,4 @@
+@HktConfig(coerceMethodName = "to{ClassName}")
+package dummy.config;
+
+import org.derive4j.hkt.HktConfig;
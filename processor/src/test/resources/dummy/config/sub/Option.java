@@ -0,0 +1,7 @@
+package dummy.config.sub;
+
+import org.derive4j.hkt.__;
+
+public final class Option<A> implements __<Option.µ, A> {
+  public enum µ {}
+}
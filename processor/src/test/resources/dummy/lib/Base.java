@@ -0,0 +1,7 @@
+package dummy.lib;
+
+import org.derive4j.hkt.__;
+
+public abstract class Base<A> implements __<Base.µ, A> {
+  public enum µ {}
+}
@@ -0,0 +1,5 @@
+package dummy.lib.sub;
+
+import dummy.lib.Base;
+
+public abstract class Derived<A> extends Base<A> {}
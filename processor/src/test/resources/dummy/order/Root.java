@@ -0,0 +1,19 @@
+package dummy.order;
+
+import org.derive4j.hkt.__;
+
+public final class Root<A> implements __<Root.µ, A> {
+  public enum µ {}
+
+  public static final class First<A> implements __<First.µ, A> {
+    public enum µ {}
+
+    public static final class Grandchild<A> implements __<Grandchild.µ, A> {
+      public enum µ {}
+    }
+  }
+
+  public static final class Second<A> implements __<Second.µ, A> {
+    public enum µ {}
+  }
+}
@@ -0,0 +1,7 @@
+package dummy.valid;
+
+import org.derive4j.hkt.__;
+
+public final class Box<A> implements __<Box.µ, A> {
+  public enum µ {}
+}
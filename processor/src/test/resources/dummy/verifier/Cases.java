@@ -0,0 +1,17 @@
+package dummy.verifier;
+
+import org.derive4j.hkt.__;
+
+public class Cases {
+
+  interface Monad<m, A> extends __<m, A> {}
+
+  static final class ViaMonad<A> implements Monad<ViaMonad.µ, A> {
+    enum µ {}
+  }
+
+  static final class WrongWitnessViaMonad<A> implements Monad<String, A> {}
+
+  @SuppressWarnings("rawtypes")
+  static final class RawHktInterface<A> implements __ {}
+}
@@ -0,0 +1,3 @@
+package org.derive4j.hkt.ex;
+
+public abstract class Just<A> extends Maybe<A> {}
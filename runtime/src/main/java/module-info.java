@@ -0,0 +1,3 @@
+module org.derive4j.hkt {
+    exports org.derive4j.hkt;
+}
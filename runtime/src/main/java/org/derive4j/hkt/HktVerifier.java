@@ -0,0 +1,402 @@
+package org.derive4j.hkt;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Runtime counterpart of the hkt type checker, for classes that were not compiled with the annotation processor (eg.
+ * loaded from plugin jars): the same rules are checked using generic reflection. Results are cached per class, so that
+ * checking a class again is a constant time lookup.
+ */
+public final class HktVerifier {
+
+  /** Errors in the higher kinded type encoding of a class, as reported by the hkt type checker. */
+  public enum HkTypeError {
+    /** The hkt interface is implemented without type arguments. */
+    HKTInterfaceDeclIsRawType,
+    /** A class without any type parameter cannot be a type constructor. */
+    HKTypesNeedAtLeastOneTypeParameter,
+    /** The arity of the hkt interface does not match the number of type parameters of the class. */
+    WrongHKTInterface,
+    /** The type parameters of the class do not appear in the same order in the hkt interface. */
+    NotMatchingTypeParams,
+    /** The witness must be the class itself (raw or with wildcards) or one of its nested classes. */
+    TCWitnessMustBeNestedClassOrClass,
+    /** A nested class used as witness must not take any type parameter. */
+    NestedTCWitnessMustBeSimpleType,
+    /** A nested class used as witness must be static (and public if the type constructor is a public class). */
+    NestedTCWitnessMustBeStaticFinal
+  }
+
+  private static final ClassValue<Verification> verifications = new ClassValue<Verification>() {
+    @Override
+    protected Verification computeValue(Class<?> type) {
+      return verification(type);
+    }
+  };
+
+  private HktVerifier() {
+  }
+
+  /**
+   * @param clazz any class.
+   * @return whether {@code clazz} implements one of the hkt interfaces (and is not only inheriting it).
+   */
+  public static boolean isHktTypeConstructor(Class<?> clazz) {
+    return verifications.get(clazz).hktInterface.isPresent();
+  }
+
+  /**
+   * @param clazz any class.
+   * @return the errors in the hkt encoding of {@code clazz}, empty if its encoding is correct or if it does not implement
+   * any hkt interface.
+   */
+  public static Set<HkTypeError> errors(Class<?> clazz) {
+    return verifications.get(clazz).errors;
+  }
+
+  /**
+   * @param clazz any class.
+   * @return whether {@code clazz} implements one of the hkt interfaces with a correct encoding.
+   */
+  public static boolean isValid(Class<?> clazz) {
+    return isHktTypeConstructor(clazz) && errors(clazz).isEmpty();
+  }
+
+  /**
+   * @param clazz any class.
+   * @param <T> the type of the class.
+   * @return {@code clazz}, if it implements one of the hkt interfaces with a correct encoding.
+   * @throws IllegalArgumentException if {@code clazz} is not a type constructor or if its encoding is not correct.
+   */
+  public static <T> Class<T> verify(Class<T> clazz) {
+    if (!isHktTypeConstructor(clazz)) {
+      throw new IllegalArgumentException(clazz.getName() + " does not implement any higher kinded type interface");
+    }
+    if (!errors(clazz).isEmpty()) {
+      throw new IllegalArgumentException(clazz.getName() + " has an incorrect higher kinded type encoding: " + errors(clazz));
+    }
+    return clazz;
+  }
+
+  private static Verification verification(Class<?> typeConstructor) {
+    return findImplementedHktInterface(typeConstructor)
+        .map(hktInterface -> new Verification(Optional.of(hktInterface), errors(typeConstructor, hktInterface)))
+        .orElseGet(() -> new Verification(Optional.empty(), Collections.emptySet()));
+  }
+
+  private static Set<HkTypeError> errors(Class<?> typeConstructor, ParameterizedType hktInterface) {
+    final TypeVariable<?>[] typeParameters = typeConstructor.getTypeParameters();
+    final Type[] typeArguments = hktInterface.getActualTypeArguments();
+    final Optional<Type> witness = Arrays.stream(typeArguments).findFirst();
+    final Optional<Class<?>> nestedWitness = witness.flatMap(HktVerifier::asClass)
+        .filter(w -> w.getDeclaringClass() == typeConstructor);
+
+    final EnumSet<HkTypeError> errors = EnumSet.noneOf(HkTypeError.class);
+
+    if (typeArguments.length == 0) {
+      errors.add(HkTypeError.HKTInterfaceDeclIsRawType);
+    }
+    if (typeParameters.length == 0) {
+      errors.add(HkTypeError.HKTypesNeedAtLeastOneTypeParameter);
+    }
+    if (typeParameters.length + 1 != erasure(hktInterface).getTypeParameters().length) {
+      errors.add(HkTypeError.WrongHKTInterface);
+    }
+    for (int i = 0; i < Math.min(typeParameters.length, typeArguments.length - 1); i++) {
+      if (!typeParameters[i].equals(typeArguments[i + 1])) {
+        errors.add(HkTypeError.NotMatchingTypeParams);
+      }
+    }
+    if (!witness.filter(w -> isValidWitness(typeConstructor, w)).isPresent()) {
+      errors.add(HkTypeError.TCWitnessMustBeNestedClassOrClass);
+    }
+    nestedWitness.filter(w -> w.getTypeParameters().length != 0)
+        .ifPresent(__ -> errors.add(HkTypeError.NestedTCWitnessMustBeSimpleType));
+    nestedWitness.filter(w -> !((w.isInterface() || Modifier.isStatic(w.getModifiers()))
+        && (!Modifier.isPublic(typeConstructor.getModifiers()) || typeConstructor.isInterface()
+        || Modifier.isPublic(w.getModifiers()))))
+        .ifPresent(__ -> errors.add(HkTypeError.NestedTCWitnessMustBeStaticFinal));
+
+    return Collections.unmodifiableSet(errors);
+  }
+
+  private static boolean isValidWitness(Class<?> typeConstructor, Type witness) {
+    return typeConstructor.equals(witness)
+        || (witness instanceof ParameterizedType
+            && typeConstructor.equals(((ParameterizedType) witness).getRawType())
+            && Arrays.stream(((ParameterizedType) witness).getActualTypeArguments()).allMatch(HktVerifier::isUnboundedWildcard))
+        || asClass(witness).filter(w -> w.getDeclaringClass() == typeConstructor).isPresent();
+  }
+
+  private static boolean isUnboundedWildcard(Type type) {
+    return type instanceof WildcardType
+        && ((WildcardType) type).getLowerBounds().length == 0
+        && Arrays.stream(((WildcardType) type).getUpperBounds()).allMatch(Object.class::equals);
+  }
+
+  private static Optional<ParameterizedType> findImplementedHktInterface(Class<?> clazz) {
+    final List<Type> superTypes = allSuperTypes(clazz);
+
+    return superTypes.stream().map(HktVerifier::asHktInterface).filter(Optional::isPresent).map(Optional::get).findFirst()
+        .filter(hktInterface -> superTypes.stream().noneMatch(s -> !erasure(s).isAssignableFrom(erasure(hktInterface))
+            && isHktTypeConstructor(erasure(s))));
+  }
+
+  /**
+   * @return {@code type} if it is one of the hkt interfaces applied to a witness, like in the processor: raw hkt
+   * interfaces, and hkt interfaces only applied to type variables (as in the declarations of interfaces extending them),
+   * do not make type constructors.
+   */
+  private static Optional<ParameterizedType> asHktInterface(Type type) {
+    return Optional.of(type)
+        .filter(ParameterizedType.class::isInstance)
+        .map(ParameterizedType.class::cast)
+        .filter(pt -> erasure(pt).getPackage() == __.class.getPackage())
+        .filter(pt -> __.class.isAssignableFrom(erasure(pt)))
+        .filter(pt -> !Arrays.stream(pt.getActualTypeArguments()).allMatch(TypeVariable.class::isInstance));
+  }
+
+  private static List<Type> allSuperTypes(Class<?> clazz) {
+    final List<Type> superTypes = new ArrayList<>();
+    addSuperTypes(clazz, Collections.emptyMap(), false, superTypes);
+    return superTypes;
+  }
+
+  /**
+   * Adds the super types of {@code clazz}, as seen from the class being verified, like {@code Types.directSupertypes}
+   * does in the processor: the type variables of the declarations are replaced by their actual type arguments.
+   *
+   * @param typeArguments the actual type arguments of the type parameters of {@code clazz}.
+   * @param raw whether {@code clazz} is inherited as a raw type, in which case its super types are erased.
+   */
+  private static void addSuperTypes(Class<?> clazz, Map<TypeVariable<?>, Type> typeArguments, boolean raw,
+      List<Type> superTypes) {
+    final List<Type> directSuperTypes = new ArrayList<>();
+    Optional.ofNullable(clazz.getGenericSuperclass()).ifPresent(directSuperTypes::add);
+    directSuperTypes.addAll(Arrays.asList(clazz.getGenericInterfaces()));
+
+    for (Type directSuperType : directSuperTypes) {
+      final Type superType = raw ? erasure(directSuperType) : substitute(directSuperType, typeArguments);
+      final Class<?> superClass = erasure(superType);
+      superTypes.add(superType);
+      addSuperTypes(superClass, typeArgumentsOf(superType),
+          superType instanceof Class && superClass.getTypeParameters().length != 0, superTypes);
+    }
+  }
+
+  private static Map<TypeVariable<?>, Type> typeArgumentsOf(Type type) {
+    final Map<TypeVariable<?>, Type> typeArguments = new HashMap<>();
+    if (type instanceof ParameterizedType) {
+      final TypeVariable<?>[] typeParameters = erasure(type).getTypeParameters();
+      final Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
+      for (int i = 0; i < Math.min(typeParameters.length, actualTypeArguments.length); i++) {
+        typeArguments.put(typeParameters[i], actualTypeArguments[i]);
+      }
+    }
+    return typeArguments;
+  }
+
+  /**
+   * @return {@code type} with the type variables of {@code typeArguments} replaced, or {@code type} itself if it does
+   * not contain any of them.
+   */
+  private static Type substitute(Type type, Map<TypeVariable<?>, Type> typeArguments) {
+    if (typeArguments.isEmpty()) {
+      return type;
+    }
+    if (type instanceof TypeVariable) {
+      return typeArguments.getOrDefault(type, type);
+    }
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType pt = (ParameterizedType) type;
+      final Type ownerType = pt.getOwnerType() == null ? null : substitute(pt.getOwnerType(), typeArguments);
+      final Type[] actualTypeArguments = substitute(pt.getActualTypeArguments(), typeArguments);
+      return ownerType == pt.getOwnerType() && actualTypeArguments == pt.getActualTypeArguments()
+          ? pt
+          : new SubstitutedParameterizedType(pt.getRawType(), ownerType, actualTypeArguments);
+    }
+    if (type instanceof WildcardType) {
+      final WildcardType wt = (WildcardType) type;
+      final Type[] upperBounds = substitute(wt.getUpperBounds(), typeArguments);
+      final Type[] lowerBounds = substitute(wt.getLowerBounds(), typeArguments);
+      return upperBounds == wt.getUpperBounds() && lowerBounds == wt.getLowerBounds()
+          ? wt
+          : new SubstitutedWildcardType(upperBounds, lowerBounds);
+    }
+    if (type instanceof GenericArrayType) {
+      final Type componentType = ((GenericArrayType) type).getGenericComponentType();
+      final Type substituted = substitute(componentType, typeArguments);
+      return substituted == componentType ? type : new SubstitutedGenericArrayType(substituted);
+    }
+    return type;
+  }
+
+  /**
+   * @return a new array if any of {@code types} was substituted, or {@code types} itself.
+   */
+  private static Type[] substitute(Type[] types, Map<TypeVariable<?>, Type> typeArguments) {
+    Type[] substituted = types;
+    for (int i = 0; i < types.length; i++) {
+      final Type type = substitute(types[i], typeArguments);
+      if (type != types[i]) {
+        if (substituted == types) {
+          substituted = types.clone();
+        }
+        substituted[i] = type;
+      }
+    }
+    return substituted;
+  }
+
+  private static Optional<Class<?>> asClass(Type type) {
+    return type instanceof Class || type instanceof ParameterizedType ? Optional.of(erasure(type)) : Optional.empty();
+  }
+
+  private static Class<?> erasure(Type type) {
+    return type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+  }
+
+  private static final class Verification {
+    final Optional<ParameterizedType> hktInterface;
+    final Set<HkTypeError> errors;
+
+    Verification(Optional<ParameterizedType> hktInterface, Set<HkTypeError> errors) {
+      this.hktInterface = hktInterface;
+      this.errors = errors;
+    }
+  }
+
+  /*
+   * Types resulting of a substitution, equal to the types of the same structure implemented by the JDK.
+   */
+
+  private static final class SubstitutedParameterizedType implements ParameterizedType {
+    private final Type rawType;
+    private final Type ownerType;
+    private final Type[] actualTypeArguments;
+
+    SubstitutedParameterizedType(Type rawType, Type ownerType, Type[] actualTypeArguments) {
+      this.rawType = rawType;
+      this.ownerType = ownerType;
+      this.actualTypeArguments = actualTypeArguments;
+    }
+
+    @Override
+    public Type[] getActualTypeArguments() {
+      return actualTypeArguments.clone();
+    }
+
+    @Override
+    public Type getRawType() {
+      return rawType;
+    }
+
+    @Override
+    public Type getOwnerType() {
+      return ownerType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof ParameterizedType
+          && rawType.equals(((ParameterizedType) obj).getRawType())
+          && Objects.equals(ownerType, ((ParameterizedType) obj).getOwnerType())
+          && Arrays.equals(actualTypeArguments, ((ParameterizedType) obj).getActualTypeArguments());
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(actualTypeArguments) ^ Objects.hashCode(ownerType) ^ Objects.hashCode(rawType);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(actualTypeArguments).map(Type::getTypeName)
+          .collect(Collectors.joining(", ", rawType.getTypeName() + "<", ">"));
+    }
+  }
+
+  private static final class SubstitutedWildcardType implements WildcardType {
+    private final Type[] upperBounds;
+    private final Type[] lowerBounds;
+
+    SubstitutedWildcardType(Type[] upperBounds, Type[] lowerBounds) {
+      this.upperBounds = upperBounds;
+      this.lowerBounds = lowerBounds;
+    }
+
+    @Override
+    public Type[] getUpperBounds() {
+      return upperBounds.clone();
+    }
+
+    @Override
+    public Type[] getLowerBounds() {
+      return lowerBounds.clone();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof WildcardType
+          && Arrays.equals(upperBounds, ((WildcardType) obj).getUpperBounds())
+          && Arrays.equals(lowerBounds, ((WildcardType) obj).getLowerBounds());
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(upperBounds) ^ Arrays.hashCode(lowerBounds);
+    }
+
+    @Override
+    public String toString() {
+      return lowerBounds.length != 0
+          ? "? super " + lowerBounds[0].getTypeName()
+          : upperBounds.length == 0 || Object.class.equals(upperBounds[0]) ? "?" : "? extends " + upperBounds[0].getTypeName();
+    }
+  }
+
+  private static final class SubstitutedGenericArrayType implements GenericArrayType {
+    private final Type genericComponentType;
+
+    SubstitutedGenericArrayType(Type genericComponentType) {
+      this.genericComponentType = genericComponentType;
+    }
+
+    @Override
+    public Type getGenericComponentType() {
+      return genericComponentType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof GenericArrayType
+          && genericComponentType.equals(((GenericArrayType) obj).getGenericComponentType());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(genericComponentType);
+    }
+
+    @Override
+    public String toString() {
+      return genericComponentType.getTypeName() + "[]";
+    }
+  }
+}
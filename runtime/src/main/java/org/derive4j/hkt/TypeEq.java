@@ -1,5 +1,9 @@
 package org.derive4j.hkt;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
 /**
  * Provide witnesses of equality between two types (propositional equality) using the Leibnizian equality definition.
  * TypeEq instances do not have any effect on values: they only expose a sometimes hidden fact:
@@ -7,13 +11,18 @@ package org.derive4j.hkt;
  *
  * TypeEq instance are safe alternative to type casting and can be used to implements generalized algebraic data types.
  *
+ * TypeEq instances (and the lift helpers) are serializable: as they carry no information at runtime, they are written
+ * in a compact canonical form that is read back as the shared reflexive instance.
+ *
  * @param <A> a type {@link A}.
  * @param <B> a type {@link B} which is guaranteed to be same as {@link A}.
  * @see <a href="http://portal.acm.org/citation.cfm?id=583852.581494">Typing Dynamic Typing</a>
  * @see <a href="http://typelevel.org/blog/2014/09/20/higher_leibniz.html">Higher TypeEq</a>
  * @see <a href="https://github.com/ekmett/eq">Leibnizian type equality in Haskell</a>
  */
-public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
+public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /** Serve as type constructor witness of TypeEq. */
   public enum µ {}
@@ -27,13 +36,9 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <A> any type.
    * @return a TypeEq representing the reflexive equality.
    */
+  @SuppressWarnings("unchecked")
   public static <A> TypeEq<A, A> refl() {
-    // The only possible implementation, the identity:
-    return new TypeEq<A, A>() {
-      @Override public <f> __<f, A> subst(final __<f, A> fa) {
-        return fa;
-      }
-    };
+    return (TypeEq<A, A>) Refl.instance;
   }
 
   /**
@@ -250,7 +255,14 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <C> left operand of the transitive type equality.
    * @return the composition of the TypeEq instances.
    */
+  @SuppressWarnings("unchecked")
   public final <C> TypeEq<C, B> compose(TypeEq<C, A> that) {
+    if (isRefl()) {
+      return (TypeEq<C, B>) (TypeEq) that;
+    }
+    if (that.isRefl()) {
+      return (TypeEq<C, B>) (TypeEq) this;
+    }
     return new TypeEq<C, B>() {
       @Override public <f> __<f, B> subst(__<f, C> fa) {
         return TypeEq.this.subst(that.subst(fa));
@@ -275,7 +287,7 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @return the type equality seen from the other side.
    */
   public final TypeEq<B, A> symm() {
-    return Symm.ofHkt(subst(new Symm<>(refl()))).typeEq;
+    return isRefl() ? unsafeRefl() : Symm.ofHkt(subst(new Symm<>(refl()))).typeEq;
   }
 
   /**
@@ -285,7 +297,7 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @return the type equality in the context of the specified type constructor.
    */
   public final <f> TypeEq<__<f, A>, __<f, B>> lift() {
-    return Lift.ofHkt(subst(new Lift<>(TypeEq.<__<f, A>>refl()))).unlift;
+    return isRefl() ? unsafeRefl() : Lift.ofHkt(subst(new Lift<>(TypeEq.<__<f, A>>refl()))).unlift;
   }
 
   /**
@@ -296,7 +308,7 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @return the type equality in the context of the specified type constructor.
    */
   public final <f, C> TypeEq<__<__<f, A>, C>, __<__<f, B>, C>> lift2() {
-    return Lift2.ofHkt(subst(new Lift2<>(TypeEq.<__<__<f, A>, C>>refl()))).unlift2;
+    return isRefl() ? unsafeRefl() : this.<f>lift().liftWitness();
   }
 
   /**
@@ -307,8 +319,11 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <D> the last type variable after substitution.
    * @return a factory to lift the TypeEq instances into any type constructor.
    */
+  @SuppressWarnings("unchecked")
   public final <C, D> Lift2TypeEq<A, C, B, D> lift2(TypeEq<C, D> cd) {
-    return new Lift2TypeEq<A, C, B, D>(this, cd);
+    return isRefl() && cd.isRefl()
+        ? (Lift2TypeEq<A, C, B, D>) Lift2TypeEq.refl
+        : new Lift2TypeEq<A, C, B, D>(this, cd);
   }
 
   /**
@@ -320,7 +335,7 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @return the type equality in the context of the specified type constructor.
    */
   public final <f, C, D> TypeEq<__<__<__<f, A>, C>, D>, __<__<__<f, B>, C>, D>> lift3() {
-    return Lift3.ofHkt(subst(new Lift3<>(TypeEq.<__<__<__<f, A>, C>, D>>refl()))).unlift3;
+    return isRefl() ? unsafeRefl() : this.<f, C>lift2().liftWitness();
   }
 
   /**
@@ -334,8 +349,127 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <F> the last type variable after substitution.
    * @return a factory to lift the TypeEq instances into any type constructor.
    */
+  @SuppressWarnings("unchecked")
   public final <C, D, E, F> Lift3TypeEq<A, C, E, B, D, F> lift3(TypeEq<C, D> cd, TypeEq<E, F> ef) {
-    return new Lift3TypeEq<A, C, E, B, D, F>(this, cd, ef);
+    return isRefl() && cd.isRefl() && ef.isRefl()
+        ? (Lift3TypeEq<A, C, E, B, D, F>) Lift3TypeEq.refl
+        : new Lift3TypeEq<A, C, E, B, D, F>(this, cd, ef);
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E> TypeEq<__<__<__<__<f, A>, C>, D>, E>, __<__<__<__<f, B>, C>, D>, E>> lift4() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D>lift3().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @param <F> the 4th type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E, F> TypeEq<__<__<__<__<__<f, A>, C>, D>, E>, F>, __<__<__<__<__<f, B>, C>, D>, E>, F>> lift5() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D, E>lift4().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @param <F> the 4th type variable after the substituted one (not substituted).
+   * @param <G> the 5th type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E, F, G> TypeEq<__<__<__<__<__<__<f, A>, C>, D>, E>, F>, G>, __<__<__<__<__<__<f, B>, C>, D>, E>, F>, G>> lift6() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D, E, F>lift5().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @param <F> the 4th type variable after the substituted one (not substituted).
+   * @param <G> the 5th type variable after the substituted one (not substituted).
+   * @param <H> the 6th type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E, F, G, H> TypeEq<__<__<__<__<__<__<__<f, A>, C>, D>, E>, F>, G>, H>, __<__<__<__<__<__<__<f, B>, C>, D>, E>, F>, G>, H>> lift7() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D, E, F, G>lift6().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @param <F> the 4th type variable after the substituted one (not substituted).
+   * @param <G> the 5th type variable after the substituted one (not substituted).
+   * @param <H> the 6th type variable after the substituted one (not substituted).
+   * @param <I> the 7th type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E, F, G, H, I> TypeEq<__<__<__<__<__<__<__<__<f, A>, C>, D>, E>, F>, G>, H>, I>, __<__<__<__<__<__<__<__<f, B>, C>, D>, E>, F>, G>, H>, I>> lift8() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D, E, F, G, H>lift7().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into any type constructor, at any position.
+   *
+   * @param <f> a type constructor witness.
+   * @param <C> the 1st type variable after the substituted one (not substituted).
+   * @param <D> the 2nd type variable after the substituted one (not substituted).
+   * @param <E> the 3rd type variable after the substituted one (not substituted).
+   * @param <F> the 4th type variable after the substituted one (not substituted).
+   * @param <G> the 5th type variable after the substituted one (not substituted).
+   * @param <H> the 6th type variable after the substituted one (not substituted).
+   * @param <I> the 7th type variable after the substituted one (not substituted).
+   * @param <J> the 8th type variable after the substituted one (not substituted).
+   * @return the type equality in the context of the specified type constructor.
+   */
+  public final <f, C, D, E, F, G, H, I, J> TypeEq<__<__<__<__<__<__<__<__<__<f, A>, C>, D>, E>, F>, G>, H>, I>, J>, __<__<__<__<__<__<__<__<__<f, B>, C>, D>, E>, F>, G>, H>, I>, J>> lift9() {
+    return isRefl() ? unsafeRefl() : this.<f, C, D, E, F, G, H, I>lift8().liftWitness();
+  }
+
+  /**
+   * The type equality can be lifted into the witness position of {@link __}.
+   */
+  private <C> TypeEq<__<A, C>, __<B, C>> liftWitness() {
+    return LiftWitness.ofHkt(subst(new LiftWitness<>(TypeEq.<__<A, C>>refl()))).unlift;
+  }
+
+  final Object writeReplace() {
+    return SerializedForm.refl;
+  }
+
+  private boolean isRefl() {
+    return this == Refl.instance;
+  }
+
+  /**
+   * Only to be used on reflexive instances, when the types of both sides are known to be the same.
+   */
+  @SuppressWarnings("unchecked")
+  private static <X, Y> TypeEq<X, Y> unsafeRefl() {
+    return (TypeEq<X, Y>) Refl.instance;
   }
 
   /**
@@ -347,7 +481,11 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <B> the before last type variable after substitution.
    * @param <D> the last type variable after substitution.
    */
-  public static final class Lift2TypeEq<A, C, B, D> {
+  public static final class Lift2TypeEq<A, C, B, D> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Lift2TypeEq<?, ?, ?, ?> refl = new Lift2TypeEq<>(Refl.instance, Refl.instance);
 
     private final TypeEq<A, B> ab;
 
@@ -369,11 +507,11 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
       TypeEq<__<__<f, A>, C>, __<__<f, B>, C>> abLift = ab.lift2();
       TypeEq<__<__<f, B>, C>, __<__<f, B>, D>> cdLift = cd.lift();
 
-      return new TypeEq<__<__<f, A>, C>, __<__<f, B>, D>>() {
-        @Override public <f2> __<f2, __<__<f, B>, D>> subst(__<f2, __<__<f, A>, C>> fa) {
-          return cdLift.subst(abLift.subst(fa));
-        }
-      };
+      return abLift.andThen(cdLift);
+    }
+
+    private Object writeReplace() {
+      return SerializedForm.lift2;
     }
   }
 
@@ -388,7 +526,11 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
    * @param <D> the before last type variable after substitution.
    * @param <F> the last type variable after substitution.
    */
-  public static final class Lift3TypeEq<A, C, E, B, D, F> {
+  public static final class Lift3TypeEq<A, C, E, B, D, F> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Lift3TypeEq<?, ?, ?, ?, ?, ?> refl = new Lift3TypeEq<>(Refl.instance, Refl.instance, Refl.instance);
 
     private final TypeEq<A, B> ab;
 
@@ -414,11 +556,11 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
       TypeEq<__<__<__<f, B>, C>, E>, __<__<__<f, B>, D>, E>> cdLift = cd.lift2();
       TypeEq<__<__<__<f, B>, D>, E>, __<__<__<f, B>, D>, F>> efLift = ef.lift();
 
-      return new TypeEq<__<__<__<f, A>, C>, E>, __<__<__<f, B>, D>, F>>() {
-        @Override public <f2> __<f2, __<__<__<f, B>, D>, F>> subst(__<f2, __<__<__<f, A>, C>, E>> fa) {
-          return efLift.subst(cdLift.subst(abLift.subst(fa)));
-        }
-      };
+      return abLift.andThen(cdLift).andThen(efLift);
+    }
+
+    private Object writeReplace() {
+      return SerializedForm.lift3;
     }
   }
 
@@ -467,34 +609,62 @@ public abstract class TypeEq<A, B> implements __2<TypeEq.µ, A, B> {
     enum µ {}
   }
 
-  private static class Lift2<f, C, A, B> implements __4<Lift2.µ, f, C, A, B> {
+  private static class LiftWitness<C, A, B> implements __3<LiftWitness.µ, C, A, B> {
 
-    final TypeEq<__<__<f, A>, C>, __<__<f, B>, C>> unlift2;
+    final TypeEq<__<A, C>, __<B, C>> unlift;
 
-    Lift2(TypeEq<__<__<f, A>, C>, __<__<f, B>, C>> unlift2) {
-      this.unlift2 = unlift2;
+    LiftWitness(TypeEq<__<A, C>, __<B, C>> unlift) {
+      this.unlift = unlift;
     }
 
-    static <f, C, A, B> Lift2<f, C, A, B> ofHkt(__<__<__<__<µ, f>, C>, A>, B> hkLift2) {
-      return (Lift2<f, C, A, B>) hkLift2;
+    static <C, A, B> LiftWitness<C, A, B> ofHkt(__<__<__<µ, C>, A>, B> hkLiftWitness) {
+      return (LiftWitness<C, A, B>) hkLiftWitness;
     }
 
     enum µ {}
   }
 
-  private static class Lift3<f, C, D, A, B> implements __5<Lift3.µ, f, C, D, A, B> {
+  private static final class Refl<A> extends TypeEq<A, A> {
+
+    private static final long serialVersionUID = 1L;
 
-    final TypeEq<__<__<__<f, A>, C>, D>, __<__<__<f, B>, C>, D>> unlift3;
+    static final Refl<?> instance = new Refl<>();
 
-    Lift3(TypeEq<__<__<__<f, A>, C>, D>, __<__<__<f, B>, C>, D>> unlift3) {
-      this.unlift3 = unlift3;
+    // The only possible implementation, the identity:
+    @Override public <f> __<f, A> subst(final __<f, A> fa) {
+      return fa;
     }
+  }
+
+  /**
+   * Serialized form of all TypeEq and lift helpers instances, resolved to the shared reflexive instances.
+   */
+  private static final class SerializedForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
-    static <f, C, D, A, B> Lift3<f, C, D, A, B> ofHkt(__<__<__<__<__<µ, f>, C>, D>, A>, B> hkLift3) {
-      return (Lift3<f, C, D, A, B>) hkLift3;
+    static final SerializedForm refl = new SerializedForm((byte) 0);
+    static final SerializedForm lift2 = new SerializedForm((byte) 2);
+    static final SerializedForm lift3 = new SerializedForm((byte) 3);
+
+    private final byte kind;
+
+    private SerializedForm(byte kind) {
+      this.kind = kind;
     }
 
-    enum µ {}
+    private Object readResolve() throws ObjectStreamException {
+      switch (kind) {
+        case 0:
+          return Refl.instance;
+        case 2:
+          return Lift2TypeEq.refl;
+        case 3:
+          return Lift3TypeEq.refl;
+        default:
+          throw new InvalidObjectException("Unknown TypeEq serialized form: " + kind);
+      }
+    }
   }
 
 }
\ No newline at end of file
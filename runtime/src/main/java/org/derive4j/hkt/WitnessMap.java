@@ -0,0 +1,202 @@
+package org.derive4j.hkt;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * A registry of values indexed by type constructor witnesses (eg. codecs or type class instances): for each witness
+ * {@code f} it holds a value of type {@code __<c, f>}, that is recovered with its precise type thanks to the
+ * {@link TypeEq} carried by the {@link Key} of the witness, instead of a {@link Class#cast}.
+ *
+ * Lookups are wait-free: entries are stored in an open-addressing identity table that is copied on write and
+ * published as a whole, so that readers never lock nor retry. Writes are serialized and cost a copy of the table,
+ * which suits registries that are filled once and then read on hot paths.
+ *
+ * @param <c> type constructor witness of the values.
+ */
+public final class WitnessMap<c> {
+
+  private static final int initialCapacity = 8;
+
+  private volatile AtomicReferenceArray<Entry<c, ?>> table = new AtomicReferenceArray<>(initialCapacity);
+
+  private int size;
+
+  /**
+   * Creates an empty map.
+   */
+  public WitnessMap() {
+  }
+
+  /**
+   * The key of a type constructor witness: there is a single key per witness class, that can thus be compared by
+   * identity.
+   *
+   * @param <f> the type constructor witness.
+   */
+  public static final class Key<f> {
+
+    private static final AtomicInteger keyCount = new AtomicInteger();
+
+    private static final ClassValue<Key<?>> keys = new ClassValue<Key<?>>() {
+      @Override
+      protected Key<?> computeValue(Class<?> witness) {
+        return new Key<>(witness);
+      }
+    };
+
+    private final Class<?> witness;
+    // fibonacci hashing of the creation order spreads keys evenly over the table:
+    private final int hash = keyCount.getAndIncrement() * 0x61c88647;
+
+    private Key(Class<?> witness) {
+      this.witness = witness;
+    }
+
+    /**
+     * @param witness a type constructor witness class, eg. {@code Foo.µ.class}.
+     * @param <f> the type constructor witness.
+     * @return the key of {@code witness}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <f> Key<f> of(Class<f> witness) {
+      return (Key<f>) keys.get(witness);
+    }
+
+    /**
+     * @param that another key.
+     * @param <g> the type constructor witness of {@code that}.
+     * @return a proof that both keys are for the same witness type, if they are the same key.
+     */
+    public <g> Optional<TypeEq<f, g>> eq(Key<g> that) {
+      return that == this ? Optional.of(sameAs(that)) : Optional.empty();
+    }
+
+    /**
+     * Must only be called with {@code this}: keys are created for a single witness class.
+     */
+    @SuppressWarnings("unchecked")
+    private <g> TypeEq<f, g> sameAs(Key<g> that) {
+      return (TypeEq<f, g>) (TypeEq) TypeEq.refl();
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + witness.getName() + ")";
+    }
+  }
+
+  private static final class Entry<c, f> {
+    final Key<f> key;
+    final __<c, f> value;
+
+    Entry(Key<f> key, __<c, f> value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    <g> __<c, g> valueAt(Key<g> sameKey) {
+      return key.sameAs(sameKey).subst(value);
+    }
+  }
+
+  /**
+   * @param key the key of a witness.
+   * @param <f> the type constructor witness.
+   * @return the value registered for the witness, if any.
+   */
+  public <f> Optional<__<c, f>> get(Key<f> key) {
+    return Optional.ofNullable(getOrDefault(key, null));
+  }
+
+  /**
+   * Lookup that does not allocate, for hot paths.
+   *
+   * @param key the key of a witness.
+   * @param defaultValue the value to return if none is registered for the witness.
+   * @param <f> the type constructor witness.
+   * @return the value registered for the witness, or {@code defaultValue}.
+   */
+  public <f> __<c, f> getOrDefault(Key<f> key, __<c, f> defaultValue) {
+    final AtomicReferenceArray<Entry<c, ?>> entries = table;
+    final int mask = entries.length() - 1;
+    for (int i = key.hash & mask; ; i = (i + 1) & mask) {
+      final Entry<c, ?> entry = entries.get(i);
+      if (entry == null) {
+        return defaultValue;
+      }
+      if (entry.key == key) {
+        return entry.valueAt(key);
+      }
+    }
+  }
+
+  /**
+   * @param key the key of a witness.
+   * @param value the value to register for the witness, not null.
+   * @param <f> the type constructor witness.
+   * @return the value previously registered for the witness, if any.
+   */
+  public synchronized <f> Optional<__<c, f>> put(Key<f> key, __<c, f> value) {
+    Objects.requireNonNull(value, "value");
+    final Optional<__<c, f>> previous = get(key);
+    final AtomicReferenceArray<Entry<c, ?>> entries = table;
+    final int newSize = previous.isPresent() ? size : size + 1;
+    // keep at least half of the slots empty, so that probe sequences stay short:
+    final AtomicReferenceArray<Entry<c, ?>> newEntries =
+        new AtomicReferenceArray<>(2 * newSize > entries.length() ? 2 * entries.length() : entries.length());
+
+    for (int i = 0; i < entries.length(); i++) {
+      final Entry<c, ?> entry = entries.get(i);
+      if (entry != null && entry.key != key) {
+        insert(newEntries, entry);
+      }
+    }
+    insert(newEntries, new Entry<>(key, value));
+
+    size = newSize;
+    table = newEntries;
+    return previous;
+  }
+
+  /**
+   * @param key the key of a witness.
+   * @param compute computes the value of the witness, if none is registered yet. Called at most once per witness.
+   * @param <f> the type constructor witness.
+   * @return the value registered for the witness.
+   */
+  public <f> __<c, f> computeIfAbsent(Key<f> key, Function<? super Key<f>, ? extends __<c, f>> compute) {
+    final __<c, f> known = getOrDefault(key, null);
+    if (known != null) {
+      return known;
+    }
+    synchronized (this) {
+      final __<c, f> registered = getOrDefault(key, null);
+      if (registered != null) {
+        return registered;
+      }
+      final __<c, f> computed = compute.apply(key);
+      put(key, computed);
+      return computed;
+    }
+  }
+
+  /**
+   * @return the number of registered witnesses.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private static <c> void insert(AtomicReferenceArray<Entry<c, ?>> entries, Entry<c, ?> entry) {
+    final int mask = entries.length() - 1;
+    int i = entry.key.hash & mask;
+    while (entries.get(i) != null) {
+      i = (i + 1) & mask;
+    }
+    entries.set(i, entry);
+  }
+}
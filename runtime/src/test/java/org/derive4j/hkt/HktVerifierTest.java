@@ -0,0 +1,96 @@
+package org.derive4j.hkt;
+
+import java.util.EnumSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HktVerifierTest {
+
+  static class Valid<A, B> implements __2<Valid.µ, A, B> {
+    enum µ {}
+  }
+
+  static final class WildcardWitness<A> implements __<WildcardWitness<?>, A> {}
+
+  static final class Inheriting<A, B> extends Valid<A, B> {}
+
+  static class WrongWitness<A> implements __<Void, A> {}
+
+  static class WrongArity<A, B> implements __<WrongArity<?, ?>, A> {}
+
+  static class SwappedTypeParams<A, B> implements __2<SwappedTypeParams.µ, B, A> {
+    enum µ {}
+  }
+
+  public static class NonPublicWitness<A> implements __<NonPublicWitness.µ, A> {
+    static final class µ {}
+  }
+
+  interface Monad<m, A> extends __<m, A> {}
+
+  static final class ViaMonad<A> implements Monad<ViaMonad.µ, A> {
+    enum µ {}
+  }
+
+  static final class WrongWitnessViaMonad<A> implements Monad<String, A> {}
+
+  static final class GenericWitness<A> implements __<GenericWitness.µ<?>, A> {
+    static final class µ<X> {}
+  }
+
+  @SuppressWarnings("rawtypes")
+  static final class RawHktInterface<A> implements __ {}
+
+  static final class NoTypeParameter implements __<NoTypeParameter.µ, String> {
+    enum µ {}
+  }
+
+  @Test
+  public void valid_encodings() {
+    assertTrue(HktVerifier.isValid(Valid.class));
+    assertTrue(HktVerifier.isValid(WildcardWitness.class));
+    assertTrue(HktVerifier.isValid(TypeEq.class));
+    assertEquals(Valid.class, HktVerifier.verify(Valid.class));
+  }
+
+  @Test
+  public void hkt_interface_through_generic_interface() {
+    assertFalse(HktVerifier.isHktTypeConstructor(Monad.class));
+    assertTrue(HktVerifier.isHktTypeConstructor(ViaMonad.class));
+    assertTrue(HktVerifier.isValid(ViaMonad.class));
+    assertTrue(HktVerifier.isHktTypeConstructor(WrongWitnessViaMonad.class));
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.TCWitnessMustBeNestedClassOrClass),
+        HktVerifier.errors(WrongWitnessViaMonad.class));
+  }
+
+  @Test
+  public void not_type_constructors() {
+    assertFalse(HktVerifier.isHktTypeConstructor(String.class));
+    assertFalse(HktVerifier.isHktTypeConstructor(Inheriting.class));
+    assertTrue(HktVerifier.errors(Inheriting.class).isEmpty());
+  }
+
+  @Test
+  public void bad_encodings() {
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.TCWitnessMustBeNestedClassOrClass), HktVerifier.errors(WrongWitness.class));
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.WrongHKTInterface), HktVerifier.errors(WrongArity.class));
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.NotMatchingTypeParams), HktVerifier.errors(SwappedTypeParams.class));
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.NestedTCWitnessMustBeStaticFinal), HktVerifier.errors(NonPublicWitness.class));
+    assertEquals(EnumSet.of(HktVerifier.HkTypeError.NestedTCWitnessMustBeSimpleType), HktVerifier.errors(GenericWitness.class));
+    assertTrue(HktVerifier.errors(NoTypeParameter.class).contains(HktVerifier.HkTypeError.HKTypesNeedAtLeastOneTypeParameter));
+  }
+
+  @Test
+  public void raw_hkt_interfaces_do_not_make_type_constructors() {
+    assertFalse(HktVerifier.isHktTypeConstructor(RawHktInterface.class));
+    assertTrue(HktVerifier.errors(RawHktInterface.class).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void verify_rejects_bad_encodings() {
+    HktVerifier.verify(WrongWitness.class);
+  }
+}
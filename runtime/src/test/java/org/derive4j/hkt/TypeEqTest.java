@@ -0,0 +1,134 @@
+package org.derive4j.hkt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TypeEqTest {
+
+  static final class Nine<A, B, C, D, E, F, G, H, I> implements __9<Nine.µ, A, B, C, D, E, F, G, H, I> {
+    enum µ {}
+  }
+
+  private final TypeEq<String, String> refl = TypeEq.refl();
+
+  private final Nine<String, String, String, String, String, String, String, String, String> nine = new Nine<>();
+
+  @Test
+  public void reflexive_equalities_are_shared() {
+    assertSame(refl, refl.compose(refl));
+    assertSame(refl, refl.andThen(refl));
+    assertSame(refl, refl.symm());
+    assertSame(refl, refl.lift());
+    assertSame(refl, refl.lift2());
+    assertSame(refl, refl.lift3());
+    assertSame(refl, refl.lift4());
+    assertSame(refl, refl.lift5());
+    assertSame(refl, refl.lift6());
+    assertSame(refl, refl.lift7());
+    assertSame(refl, refl.lift8());
+    assertSame(refl, refl.lift9());
+    assertSame(refl.lift2(refl), refl.lift2(refl));
+    assertSame(refl.lift3(refl, refl), refl.lift3(refl, refl));
+    assertSame(refl, refl.lift2(refl).lift());
+    assertSame(refl, refl.lift3(refl, refl).lift());
+  }
+
+  @Test
+  public void non_reflexive_equalities_still_coerce() throws Exception {
+    TypeEq<String, String> eq = TypeEqTest.<String>unshared().compose(unshared());
+    assertNotSame(refl, eq);
+    assertNotSame(refl.lift2(refl), eq.lift2(refl));
+    assertNotSame(refl.lift3(refl, refl), refl.lift3(eq, refl));
+
+    assertEquals("a", eq.coerce("a"));
+    assertEquals("a", eq.symm().coerce("a"));
+    assertEquals("a", eq.compose(refl).andThen(eq).coerce("a"));
+
+    assertSame(nine, eq.<__<__<__<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String>, String>, String>>lift()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String>, String>, String>lift2()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String>, String, String>lift3()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String, String, String>lift4()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<__<__<Nine.µ, String>, String>, String>, String>, String, String, String, String>lift5()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<__<Nine.µ, String>, String>, String>, String, String, String, String, String>lift6()
+        .coerce(nine));
+    assertSame(nine, eq.<__<__<Nine.µ, String>, String>, String, String, String, String, String, String>lift7()
+        .coerce(nine));
+    assertSame(nine, eq.<__<Nine.µ, String>, String, String, String, String, String, String, String>lift8()
+        .coerce(nine));
+    assertSame(nine, eq.<Nine.µ, String, String, String, String, String, String, String, String>lift9()
+        .coerce(nine));
+
+    assertSame(nine, eq.lift2(eq).<__<__<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String>, String>>lift()
+        .coerce(nine));
+    assertSame(nine, eq.lift3(eq, eq).<__<__<__<__<__<__<Nine.µ, String>, String>, String>, String>, String>, String>>lift()
+        .coerce(nine));
+  }
+
+  @Test
+  public void serialized_equalities_are_read_back_as_shared_instances() throws Exception {
+    TypeEq<String, String> eq = TypeEqTest.<String>unshared().compose(unshared());
+
+    assertSame(refl, roundTrip(refl));
+    assertSame(refl, roundTrip(eq));
+    assertSame(refl, roundTrip(eq.symm()));
+    assertSame(refl, roundTrip(unshared().symm()));
+    assertSame(refl.lift2(refl), roundTrip(refl.lift2(refl)));
+    assertSame(refl.lift2(refl), roundTrip(eq.lift2(refl)));
+    assertSame(refl.lift3(refl, refl), roundTrip(refl.lift3(refl, refl)));
+    assertSame(refl.lift3(refl, refl), roundTrip(refl.lift3(eq, eq)));
+  }
+
+  private static Object roundTrip(Object value) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return in.readObject();
+    }
+  }
+
+  /**
+   * A reflexive equality that is not the shared instance, so that it goes through the substitution based code paths:
+   * it is read from a stream of a plain {@code TypeEq.Refl} object, that bypasses the serialized form of TypeEq.
+   */
+  @SuppressWarnings("unchecked")
+  private static <A> TypeEq<A, A> unshared() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+      out.writeShort(ObjectStreamConstants.STREAM_VERSION);
+      out.writeByte(ObjectStreamConstants.TC_OBJECT);
+      writeClassDesc(out, TypeEq.class.getName() + "$Refl");
+      writeClassDesc(out, TypeEq.class.getName());
+      out.writeByte(ObjectStreamConstants.TC_NULL);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (TypeEq<A, A>) in.readObject();
+    }
+  }
+
+  private static void writeClassDesc(DataOutputStream out, String className) throws IOException {
+    out.writeByte(ObjectStreamConstants.TC_CLASSDESC);
+    out.writeUTF(className);
+    out.writeLong(1L);
+    out.writeByte(ObjectStreamConstants.SC_SERIALIZABLE);
+    out.writeShort(0);
+    out.writeByte(ObjectStreamConstants.TC_ENDBLOCKDATA);
+  }
+}
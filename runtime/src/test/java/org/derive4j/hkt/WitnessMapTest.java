@@ -0,0 +1,95 @@
+package org.derive4j.hkt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WitnessMapTest {
+
+  static final class Name<f> implements __<Name.µ, f> {
+    enum µ {}
+
+    final String name;
+
+    Name(String name) {
+      this.name = name;
+    }
+
+    static <f> Name<f> ofHkt(__<Name.µ, f> hkt) {
+      return (Name<f>) hkt;
+    }
+  }
+
+  static final class Box<A> implements __<Box.µ, A> {
+    enum µ {}
+  }
+
+  static final class Pair<A, B> implements __2<Pair.µ, A, B> {
+    enum µ {}
+  }
+
+  @Test
+  public void values_are_recovered_by_witness() {
+    WitnessMap<Name.µ> names = new WitnessMap<>();
+    WitnessMap.Key<Box.µ> boxKey = WitnessMap.Key.of(Box.µ.class);
+    WitnessMap.Key<Pair.µ> pairKey = WitnessMap.Key.of(Pair.µ.class);
+
+    assertFalse(names.get(boxKey).isPresent());
+    assertEquals(Optional.empty(), names.put(boxKey, new Name<>("box")));
+    names.put(pairKey, new Name<>("pair"));
+
+    Name<Box.µ> boxName = Name.ofHkt(names.get(boxKey).get());
+    assertEquals("box", boxName.name);
+    assertEquals("pair", Name.ofHkt(names.getOrDefault(pairKey, null)).name);
+    assertEquals(2, names.size());
+
+    assertEquals("box", Name.ofHkt(names.put(boxKey, new Name<>("box2")).get()).name);
+    assertEquals("box2", Name.ofHkt(names.get(boxKey).get()).name);
+    assertEquals(2, names.size());
+  }
+
+  @Test
+  public void keys_are_unique_per_witness() {
+    assertSame(WitnessMap.Key.of(Box.µ.class), WitnessMap.Key.of(Box.µ.class));
+    assertTrue(WitnessMap.Key.of(Box.µ.class).eq(WitnessMap.Key.of(Box.µ.class)).isPresent());
+    assertFalse(WitnessMap.Key.of(Box.µ.class).eq(WitnessMap.Key.of(Pair.µ.class)).isPresent());
+  }
+
+  @Test
+  public void table_grows_and_computes_once() {
+    WitnessMap<Name.µ> names = new WitnessMap<>();
+    List<WitnessMap.Key<?>> keys = new ArrayList<>();
+    for (Class<?> witness : new Class<?>[] { Box.µ.class, Pair.µ.class, Name.µ.class, TypeEq.µ.class, String.class,
+        Integer.class, Long.class, Double.class, Object.class, Void.class, List.class, Optional.class, Thread.class }) {
+      keys.add(register(names, witness));
+    }
+    assertEquals(keys.size(), names.size());
+    for (WitnessMap.Key<?> key : keys) {
+      assertTrue(names.get(key).isPresent());
+    }
+
+    AtomicInteger computations = new AtomicInteger();
+    WitnessMap.Key<Box.µ> boxKey = WitnessMap.Key.of(Box.µ.class);
+    WitnessMap<Name.µ> lazyNames = new WitnessMap<>();
+    for (int i = 0; i < 3; i++) {
+      assertEquals("lazy", Name.ofHkt(lazyNames.computeIfAbsent(boxKey, key -> {
+        computations.incrementAndGet();
+        return new Name<>("lazy");
+      })).name);
+    }
+    assertEquals(1, computations.get());
+  }
+
+  private static <f> WitnessMap.Key<f> register(WitnessMap<Name.µ> names, Class<f> witness) {
+    WitnessMap.Key<f> key = WitnessMap.Key.of(witness);
+    names.put(key, new Name<>(witness.getName()));
+    return key;
+  }
+}